@@ -0,0 +1,101 @@
+package in.student.project.index;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * State (modification time, size and CRC32 checksum) of the bundles an
+ * index was built from.
+ * <p>
+ * The manifest is kept in the commit user data of the index, one entry per
+ * bundle: <code>bundle:&lt;path relative to the root&gt;</code> -
+ * <code>modified size crc</code>. So it is always committed together with
+ * the documents it describes.
+ */
+public class BundleManifest {
+	public static final String PREFIX = "bundle:";
+
+	private final HashMap<String, String> entries = new HashMap<String, String>();
+
+	public BundleManifest() {}
+
+	/**
+	 * @param commitData - of the index; entries that are not bundles are ignored
+	 */
+	public BundleManifest(Map<String, String> commitData) {
+		for (Map.Entry<String, String> entry : commitData.entrySet()) {
+			if (entry.getKey().startsWith(PREFIX))
+				entries.put(entry.getKey().substring(PREFIX.length()), entry.getValue());
+		}
+	}
+
+	/**
+	 * @return name of the bundle in the manifest; its path relative to the root
+	 */
+	public static String name(File root, File bundle) {
+		String name = root.toURI().relativize(bundle.toURI()).getPath();
+		return name.isEmpty() ? bundle.getName() : name;
+	}
+
+	/**
+	 * Compares the bundle with its entry: the same modification time and size
+	 * mean the bundle is unchanged; otherwise its checksum decides.
+	 * The bundle's current state is recorded in <code>current</code>.
+	 *
+	 * @return true if the bundle is in this manifest and has not changed
+	 */
+	public boolean isUnchanged(String name, File bundle, BundleManifest current) throws IOException {
+		String entry = entries.get(name);
+		long modified = bundle.lastModified();
+		long size = bundle.length();
+		if (entry != null) {
+			String[] state = entry.split(" ");
+			if (Long.parseLong(state[0]) == modified && Long.parseLong(state[1]) == size) {
+				current.entries.put(name, entry);
+				return true;
+			}
+		}
+		long crc = checksum(bundle);
+		current.entries.put(name, modified + " " + size + " " + crc);
+		return entry != null && Long.parseLong(entry.split(" ")[2]) == crc;
+	}
+
+	/**
+	 * Records the state of the bundle, checksummed by the caller while it read the bundle
+	 */
+	public void put(String name, long modified, long size, long crc) {
+		entries.put(name, modified + " " + size + " " + crc);
+	}
+
+	/**
+	 * @return names of the bundles in the manifest
+	 */
+	public Set<String> names() {
+		return entries.keySet();
+	}
+
+	/**
+	 * @return entries to be set as commit user data of the index
+	 */
+	public Map<String, String> toCommitData() {
+		HashMap<String, String> commitData = new HashMap<String, String>();
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			commitData.put(PREFIX + entry.getKey(), entry.getValue());
+		}
+		return commitData;
+	}
+
+	private static long checksum(File bundle) throws IOException {
+		CheckedInputStream in = new CheckedInputStream(new FileInputStream(bundle), new CRC32());
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			while (in.read(buffer) != -1) {
+			}
+		} finally {
+			in.close();
+		}
+		return in.getChecksum().getValue();
+	}
+}
@@ -0,0 +1,485 @@
+package in.student.project.index;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import in.student.project.util.Defs;
+
+/**
+ * Indexes TREC bundles with a producer/consumer pipeline of three stages.
+ * <p>
+ * Inflater threads take bundles in turn, read them (inflating gzipped ones)
+ * and stream them in chunks of <code>TrecDocReader.BUFFER_SIZE</code> bytes
+ * to the reader threads; reader threads split the streams into documents
+ * and put them into a bounded queue; parser threads take documents from the
+ * queue, make Lucene documents with <code>TrecDocument.Document</code> and
+ * add them to the (thread safe) <code>IndexWriter</code> concurrently.
+ * <p>
+ * The queues bound the data waiting between the stages, so no stage can run
+ * far ahead of the next one. An inflater streams one bundle at a time, and
+ * at most <code>CHUNKS</code> chunks of it wait to be read; so besides the
+ * queue of documents, memory is bounded by the largest document, which
+ * <code>TrecDocReader</code> keeps whole, not by the size of the bundles.
+ * <p>
+ * Each stage counts its work and the time its threads spend on it (not
+ * waiting for the other stages); <code>report()</code> shows which stage
+ * is the bottleneck.
+ * <p>
+ * With one thread in each stage the documents are added in the order of
+ * the bundles, as by a single thread.
+ * <p>
+ * If a manifest is set the inflaters record in it the state of each bundle
+ * as it is read: its modification time and size when it is opened and the
+ * checksum of the bytes read, so the manifest describes the indexed
+ * content without reading the bundles again.
+ */
+public class IndexPipeline {
+	public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+	/** Chunks of a bundle that may wait for its reader */
+	public static final int CHUNKS = 4;
+
+	// how often blocked threads check whether another thread failed
+	private static final long POLL_MILLIS = 100;
+
+	// ends the chunks of a bundle
+	private static final byte[] END_CHUNK = new byte[0];
+
+	/**
+	 * Bundle streamed from its inflater to a reader through a bounded queue of
+	 * chunks; read by one reader thread
+	 */
+	private class BundleStream extends InputStream {
+		final String name;
+		final File file;
+		final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNKS);
+		private byte[] chunk = new byte[0];
+		private int pos = 0;
+		// time spent waiting for the inflater
+		long waitNanos = 0;
+
+		BundleStream(String name, File file) {
+			this.name = name;
+			this.file = file;
+		}
+
+		/**
+		 * @return false at the end of the bundle
+		 */
+		private boolean fill() throws IOException {
+			if (chunk == END_CHUNK)
+				return false;
+			try {
+				while (pos == chunk.length) {
+					long start = System.nanoTime();
+					chunk = take(chunks);
+					waitNanos += System.nanoTime() - start;
+					pos = 0;
+					if (chunk == END_CHUNK)
+						return false;
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new InterruptedIOException(e.toString());
+			}
+			return true;
+		}
+
+		public int read() throws IOException {
+			return fill() ? chunk[pos++] & 0xff : -1;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!fill())
+				return -1;
+			int n = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+
+	// tells a reader that all the bundles are inflated
+	private final BundleStream END_BUNDLE = new BundleStream(null, null);
+
+	/**
+	 * Document read from a bundle, waiting to be parsed. The text is the only
+	 * copy of the document: it is copied once out of the reader's reused buffer
+	 * (the buffer is not handed over, as every queued document would then keep
+	 * a buffer sized for the documents before it) and the parser reads it as
+	 * is, with no encoding to bytes and decoding back.
+	 */
+	private static class RawDoc {
+		final String bundle;
+		final String docNo;
+		final String html;
+
+		RawDoc(String bundle, String docNo, String html) {
+			this.bundle = bundle;
+			this.docNo = docNo;
+			this.html = html;
+		}
+	}
+
+	// tells a parser that all the bundles are read
+	private static final RawDoc END = new RawDoc(null, null, null);
+
+	private final IndexWriter writer;
+	private final int inflaters;
+	private final int readers;
+	private final int parsers;
+	private final BlockingQueue<BundleStream> bundleQueue;
+	private final BlockingQueue<RawDoc> queue;
+	private boolean update = false;
+	private BundleManifest manifest;
+	private Analyzer feedbackAnalyzer;
+	private int feedbackTerms = 0;
+	// work and busy time of the stages
+	private final AtomicInteger bundlesInflated = new AtomicInteger();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong bytesInflated = new AtomicLong();
+	private final AtomicLong inflateNanos = new AtomicLong();
+	private final AtomicInteger docsRead = new AtomicInteger();
+	private final AtomicLong readNanos = new AtomicLong();
+	private final AtomicInteger docsAdded = new AtomicInteger();
+	private final AtomicLong parseNanos = new AtomicLong();
+	private volatile Throwable failure;
+
+	/**
+	 * @param writer - documents are added to
+	 * @param inflaters - number of threads reading (and inflating) bundles
+	 * @param readers - number of threads splitting bundles into documents
+	 * @param parsers - number of threads parsing and adding documents
+	 * @param queueSize - maximum number of documents waiting to be parsed
+	 */
+	public IndexPipeline(IndexWriter writer, int inflaters, int readers, int parsers, int queueSize) {
+		if (inflaters < 1 || readers < 1 || parsers < 1 || queueSize < 1)
+			throw new IllegalArgumentException("inflaters, readers, parsers and queue size must be positive");
+		this.writer = writer;
+		this.inflaters = inflaters;
+		this.readers = readers;
+		this.parsers = parsers;
+		this.bundleQueue = new ArrayBlockingQueue<BundleStream>(inflaters);
+		this.queue = new ArrayBlockingQueue<RawDoc>(queueSize);
+	}
+
+	/**
+	 * @param update - if true a document replaces the indexed document with
+	 *                 the same DOCNO (<code>IndexWriter.updateDocument</code>);
+	 *                 otherwise documents are just added
+	 */
+	public void setUpdate(boolean update) {
+		this.update = update;
+	}
+
+	/**
+	 * @param manifest - the state of the bundles is recorded in as they are read
+	 */
+	public void setManifest(BundleManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	/**
+	 * Stores the top terms of the contents of the documents for query expansion
+	 * (<code>Defs.FLD_FEEDBACK_TERMS</code>); not stored unless set.
+	 *
+	 * @param analyzer - of the index writer, so the terms are the indexed terms
+	 * @param maxTerms - number of terms to store; 0 - no terms are stored
+	 */
+	public void setFeedbackTerms(Analyzer analyzer, int maxTerms) {
+		this.feedbackAnalyzer = analyzer;
+		this.feedbackTerms = maxTerms;
+	}
+
+	/**
+	 * Indexes the documents of the bundles; returns when all of them are added.
+	 * If any thread fails, the others stop and its exception is thrown.
+	 *
+	 * @param root - the bundles are under; documents are tagged with 
+	 *               the bundle path relative to it (<code>Defs.FLD_BUNDLE</code>)
+	 */
+	public void index(final File root, List<File> bundles) throws Exception {
+		final ConcurrentLinkedQueue<File> pending = new ConcurrentLinkedQueue<File>(bundles);
+		ExecutorService pool = Executors.newFixedThreadPool(inflaters + readers + parsers);
+		try {
+			ArrayList<Future<Void>> inflaterResults = new ArrayList<Future<Void>>();
+			for (int i = 0; i < inflaters; i++) {
+				inflaterResults.add(pool.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						File bundle;
+						while ((bundle = pending.poll()) != null) {
+							inflateBundle(BundleManifest.name(root, bundle), bundle);
+						}
+						return null;
+					}
+				}));
+			}
+			ArrayList<Future<Void>> readerResults = new ArrayList<Future<Void>>();
+			for (int i = 0; i < readers; i++) {
+				readerResults.add(pool.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						readBundles();
+						return null;
+					}
+				}));
+			}
+			ArrayList<Future<Void>> parserResults = new ArrayList<Future<Void>>();
+			for (int i = 0; i < parsers; i++) {
+				parserResults.add(pool.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						parseDocs();
+						return null;
+					}
+				}));
+			}
+
+			try {
+				waitFor(inflaterResults);
+				for (int i = 0; i < readers; i++) {
+					put(bundleQueue, END_BUNDLE);
+				}
+				waitFor(readerResults);
+				for (int i = 0; i < parsers; i++) {
+					put(queue, END);
+				}
+				waitFor(parserResults);
+			} catch (Exception e) {
+				// report the exception of the thread that failed first
+				if (failure instanceof Exception)
+					throw (Exception) failure;
+				if (failure instanceof Error)
+					throw (Error) failure;
+				throw e;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reads the bundle, inflating it if it is gzipped, and streams it to a
+	 * reader in chunks; returns when the reader has taken all but the last
+	 * <code>CHUNKS</code> of them
+	 */
+	private void inflateBundle(String name, File bundle) throws Exception {
+		System.out.println("adding " + bundle.getPath());
+		try {
+			long nanos = 0;
+			long start = System.nanoTime();
+			// the state the manifest records is the one before reading
+			long modified = bundle.lastModified();
+			long size = bundle.length();
+			CheckedInputStream checked = new CheckedInputStream(new FileInputStream(bundle), new CRC32());
+			InputStream in = checked;
+			try {
+				if (bundle.getPath().endsWith(".gz"))
+					in = new GZIPInputStream(in, TrecDocReader.BUFFER_SIZE);
+				nanos += System.nanoTime() - start;
+
+				BundleStream stream = new BundleStream(name, bundle);
+				put(bundleQueue, stream);
+
+				long length = 0;
+				boolean end = false;
+				while (!end) {
+					start = System.nanoTime();
+					// full chunks, but the last one
+					byte[] chunk = new byte[TrecDocReader.BUFFER_SIZE];
+					int filled = 0;
+					int n;
+					while (filled < chunk.length && (n = in.read(chunk, filled, chunk.length - filled)) != -1) {
+						filled += n;
+					}
+					end = filled < chunk.length;
+					if (end)
+						chunk = Arrays.copyOf(chunk, filled);
+					length += filled;
+					nanos += System.nanoTime() - start;
+
+					if (filled > 0)
+						put(stream.chunks, chunk);
+				}
+				put(stream.chunks, END_CHUNK);
+
+				start = System.nanoTime();
+				if (manifest != null) {
+					// the checksum covers the whole file, also bytes after the last gzip member
+					byte[] rest = new byte[TrecDocReader.BUFFER_SIZE];
+					while (checked.read(rest) != -1) {
+					}
+					synchronized (manifest) {
+						manifest.put(name, modified, size, checked.getChecksum().getValue());
+					}
+				}
+				bytesRead.addAndGet(size);
+				bytesInflated.addAndGet(length);
+				bundlesInflated.incrementAndGet();
+				nanos += System.nanoTime() - start;
+			} finally {
+				in.close();
+				inflateNanos.addAndGet(nanos);
+			}
+		} catch (Throwable e) {
+			// also errors, or the other threads would wait for this one forever
+			fail(e);
+			throw e;
+		}
+	}
+
+	private void readBundles() throws Exception {
+		try {
+			BundleStream bundle;
+			while ((bundle = take(bundleQueue)) != END_BUNDLE) {
+				TrecDocReader docs = new TrecDocReader(bundle.file, bundle);
+				try {
+					// busy time is without the time waiting for chunks
+					long start = System.nanoTime() - bundle.waitNanos;
+					while (docs.next()) {
+						RawDoc raw = new RawDoc(bundle.name, docs.getDocNo(), docs.getDoc().toString());
+						readNanos.addAndGet(System.nanoTime() - start - bundle.waitNanos);
+						put(queue, raw);
+						docsRead.incrementAndGet();
+						start = System.nanoTime() - bundle.waitNanos;
+					}
+					readNanos.addAndGet(System.nanoTime() - start - bundle.waitNanos);
+				} finally {
+					docs.close();
+				}
+			}
+		} catch (Throwable e) {
+			// also errors, or the other threads would wait for this one forever
+			fail(e);
+			throw e;
+		}
+	}
+
+	private void parseDocs() throws Exception {
+		try {
+			RawDoc raw;
+			while ((raw = take(queue)) != END) {
+				if (raw.docNo == null) {
+					// documents are identified (and replaced) by DOCNO
+					System.out.println("skipping a document without DOCNO in " + raw.bundle);
+					continue;
+				}
+				System.out.println("[docNo--- "+raw.docNo+" ---docNo]");
+
+				long start = System.nanoTime();
+				// the parser reads the decoded text of the bundle as it is
+				Document doc = TrecDocument.Document(new StringReader(raw.html), raw.docNo,
+						feedbackAnalyzer, feedbackTerms);
+				if (doc != null) {
+					// lets an incremental run delete the documents of the bundle
+					doc.add(new StringField(Defs.FLD_BUNDLE, raw.bundle, Field.Store.YES));
+					if (update)
+						writer.updateDocument(new Term("DOCNO", raw.docNo), doc);
+					else
+						writer.addDocument(doc);
+					docsAdded.incrementAndGet();
+				}
+				parseNanos.addAndGet(System.nanoTime() - start);
+			}
+		} catch (Throwable e) {
+			// also errors, or the other threads would wait for this one forever
+			fail(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Records the first failure; the other threads stop when they see it
+	 */
+	private synchronized void fail(Throwable e) {
+		if (failure == null)
+			failure = e;
+	}
+
+	private <T> void put(BlockingQueue<T> queue, T item) throws Exception {
+		while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+			checkFailure();
+		}
+	}
+
+	private <T> T take(BlockingQueue<T> queue) throws Exception {
+		T item;
+		while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+			checkFailure();
+		}
+		return item;
+	}
+
+	private void checkFailure() {
+		if (failure != null)
+			throw new CancellationException("another indexing thread failed");
+	}
+
+	private void waitFor(List<Future<Void>> results) throws Exception {
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception) e.getCause();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @return number of documents read from the bundles
+	 */
+	public int getDocsRead() {
+		return docsRead.get();
+	}
+
+	/**
+	 * @return number of documents added to the index
+	 */
+	public int getDocsAdded() {
+		return docsAdded.get();
+	}
+
+	/**
+	 * Throughput of each stage: its work per second of busy time of one of
+	 * its threads. The stage whose busy time per thread is closest to the
+	 * elapsed time is the bottleneck.
+	 *
+	 * @return one line per stage
+	 */
+	public String report() {
+		return "inflate: " + bundlesInflated.get() + " bundles, " + mb(bytesRead.get()) + " MB to " 
+				+ mb(bytesInflated.get()) + " MB, " + stage(inflateNanos.get(), inflaters)
+				+ ", " + mb(perSecond(bytesInflated.get(), inflateNanos.get())) + " MB/s per thread\n"
+				+ "read: " + docsRead.get() + " documents, " + stage(readNanos.get(), readers)
+				+ ", " + perSecond(docsRead.get(), readNanos.get()) + " documents/s per thread\n"
+				+ "parse: " + docsAdded.get() + " documents, " + stage(parseNanos.get(), parsers)
+				+ ", " + perSecond(docsAdded.get(), parseNanos.get()) + " documents/s per thread";
+	}
+
+	private static String stage(long nanos, int threads) {
+		return threads + " threads busy " + nanos / 1000000 + " milliseconds";
+	}
+
+	private static long mb(long bytes) {
+		return bytes / (1024 * 1024);
+	}
+
+	private static long perSecond(long count, long nanos) {
+		return nanos == 0 ? 0 : (long) (count * 1e9 / nanos);
+	}
+}
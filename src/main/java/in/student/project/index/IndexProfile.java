@@ -0,0 +1,145 @@
+package in.student.project.index;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MergePolicy;
+import org.apache.lucene.index.TieredMergePolicy;
+
+/**
+ * Resources of the <code>IndexWriter</code> for a bulk load: RAM buffer,
+ * merge scheduler threads, merge policy and compound files; and the time
+ * spent merging segments with them.
+ * <p>
+ * Settings are read from a properties file (the keys below); settings that
+ * are not given keep the Lucene defaults.
+ * <pre>
+ * # MB of documents buffered before a segment is flushed (-1 - by document count only)
+ * index.ram.buffer.mb = 256
+ * # documents buffered before a segment is flushed (-1 - by RAM only)
+ * index.max.buffered.docs = -1
+ * # merges run at once and merges that may be pending before indexing threads stall
+ * index.merge.threads = 2
+ * index.merge.max = 7
+ * # TieredMergePolicy
+ * index.merge.segments.per.tier = 10
+ * index.merge.max.at.once = 10
+ * index.merge.max.segment.mb = 5120
+ * index.merge.floor.segment.mb = 2
+ * # write segments as compound files (fewer open files, slower to write)
+ * index.compound.file = false
+ * # merge the index down to that many segments at the end (0 - no force merge)
+ * index.force.merge = 1
+ * </pre>
+ */
+public class IndexProfile {
+	public static final String RAM_BUFFER_MB_FLD = "index.ram.buffer.mb";
+	public static final String MAX_BUFFERED_DOCS_FLD = "index.max.buffered.docs";
+	public static final String MERGE_THREADS_FLD = "index.merge.threads";
+	public static final String MERGE_MAX_FLD = "index.merge.max";
+	public static final String SEGMENTS_PER_TIER_FLD = "index.merge.segments.per.tier";
+	public static final String MAX_MERGE_AT_ONCE_FLD = "index.merge.max.at.once";
+	public static final String MAX_MERGED_SEGMENT_MB_FLD = "index.merge.max.segment.mb";
+	public static final String FLOOR_SEGMENT_MB_FLD = "index.merge.floor.segment.mb";
+	public static final String COMPOUND_FILE_FLD = "index.compound.file";
+	public static final String FORCE_MERGE_FLD = "index.force.merge";
+
+	private final Properties prop = new Properties();
+
+	private final AtomicLong merges = new AtomicLong();
+	private final AtomicLong mergeNanos = new AtomicLong();
+	private long forceMergeNanos;
+
+	/**
+	 * Loads settings from the properties file
+	 */
+	public void load(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			prop.load(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Sets one of the settings; overrides the properties file
+	 */
+	public void set(String key, String value) {
+		prop.setProperty(key, value);
+	}
+
+	/**
+	 * @return number of segments to force merge the index to; 0 - no force merge
+	 */
+	public int getForceMerge() {
+		return Integer.parseInt(prop.getProperty(FORCE_MERGE_FLD, "0"));
+	}
+
+	/**
+	 * Sets the RAM buffer, merge scheduler and merge policy of the profile;
+	 * times merges of the writer.
+	 */
+	public void apply(IndexWriterConfig iwc) {
+		// document count first, so RAM can be disabled in favour of it
+		iwc.setMaxBufferedDocs(Integer.parseInt(prop.getProperty(MAX_BUFFERED_DOCS_FLD,
+				String.valueOf(IndexWriterConfig.DEFAULT_MAX_BUFFERED_DOCS))));
+		iwc.setRAMBufferSizeMB(Double.parseDouble(prop.getProperty(RAM_BUFFER_MB_FLD,
+				String.valueOf(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB))));
+
+		ConcurrentMergeScheduler scheduler = new ConcurrentMergeScheduler() {
+			protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+				long start = System.nanoTime();
+				try {
+					super.doMerge(merge);
+				} finally {
+					mergeNanos.addAndGet(System.nanoTime() - start);
+					merges.incrementAndGet();
+				}
+			}
+		};
+		int threads = Integer.parseInt(prop.getProperty(MERGE_THREADS_FLD,
+				String.valueOf(scheduler.getMaxThreadCount())));
+		int maxMerges = Integer.parseInt(prop.getProperty(MERGE_MAX_FLD,
+				String.valueOf(Math.max(threads, scheduler.getMaxMergeCount()))));
+		scheduler.setMaxMergesAndThreads(maxMerges, threads);
+		iwc.setMergeScheduler(scheduler);
+
+		TieredMergePolicy policy = new TieredMergePolicy();
+		if (prop.getProperty(SEGMENTS_PER_TIER_FLD) != null)
+			policy.setSegmentsPerTier(Double.parseDouble(prop.getProperty(SEGMENTS_PER_TIER_FLD)));
+		if (prop.getProperty(MAX_MERGE_AT_ONCE_FLD) != null)
+			policy.setMaxMergeAtOnce(Integer.parseInt(prop.getProperty(MAX_MERGE_AT_ONCE_FLD)));
+		if (prop.getProperty(MAX_MERGED_SEGMENT_MB_FLD) != null)
+			policy.setMaxMergedSegmentMB(Double.parseDouble(prop.getProperty(MAX_MERGED_SEGMENT_MB_FLD)));
+		if (prop.getProperty(FLOOR_SEGMENT_MB_FLD) != null)
+			policy.setFloorSegmentMB(Double.parseDouble(prop.getProperty(FLOOR_SEGMENT_MB_FLD)));
+
+		// flushed segments and merged segments alike
+		boolean compound = Boolean.parseBoolean(prop.getProperty(COMPOUND_FILE_FLD,
+				String.valueOf(IndexWriterConfig.DEFAULT_USE_COMPOUND_FILE_SYSTEM)));
+		iwc.setUseCompoundFile(compound);
+		if (!compound)
+			policy.setNoCFSRatio(0.0);
+		iwc.setMergePolicy(policy);
+	}
+
+	/**
+	 * Records the time of the final force merge
+	 */
+	public void setForceMergeNanos(long nanos) {
+		forceMergeNanos = nanos;
+	}
+
+	/**
+	 * @return settings and time spent merging
+	 */
+	public String report() {
+		return "profile " + new TreeMap<Object, Object>(prop) + "\n"
+				+ merges.get() + " merges, " + mergeNanos.get() / 1000000 + " milliseconds"
+				+ (forceMergeNanos > 0 ? " (force merge " + forceMergeNanos / 1000000 + " milliseconds)" : "");
+	}
+}
@@ -25,24 +25,27 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
-import in.student.project.index.TermEnum;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.Version;
+import in.student.project.util.Defs;
+import in.student.project.util.FeedbackTerms;
 
 import java.io.*;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
 
 /**
  * Indexer for HTML files.
  */
 public class IndexTrec {
-	private static boolean deleting = false; // true during deletion pass
-	private static IndexReader reader; // existing index
 	private static IndexWriter writer; // new index being built
-	private static TermEnum uidIter; // document id iterator
+	private static int inflaters = 1; // threads reading and inflating bundles
+	private static int readers = 1; // threads splitting bundles into documents
+	private static int threads = 1; // threads parsing and adding documents
+	private static int queueSize = IndexPipeline.DEFAULT_QUEUE_SIZE; // documents waiting to be parsed
+	private static int feedbackTerms = FeedbackTerms.DEFAULT_MAX_TERMS; // top terms stored per document
+	private static IndexProfile profile = new IndexProfile(); // RAM buffer, merges of the writer
 	
     private IndexTrec() {}
 
@@ -53,7 +56,9 @@ public class IndexTrec {
 			boolean create = false;
 			File root = null;
 
-			String usage = "IndexTrec [-create] [-index <index>] <root_directory>";
+			String usage = "IndexTrec [-create] [-index <index>] [-threads <n>] [-inflaters <n>] [-readers <n>] [-queue <n>] [-feedbackterms <n>]"
+					+ " [-profile <file>] [-ram <mb>] [-maxbuffered <n>] [-mergethreads <n>] [-compound <true|false>] [-forcemerge <n>]"
+					+ " <root_directory>";
 
 			if (argv.length == 0) {
 				System.err.println("Usage: " + usage);
@@ -65,6 +70,28 @@ public class IndexTrec {
 					index = new File(argv[++i]);
 				} else if (argv[i].equals("-create")) { // parse -create option
 					create = true;
+				} else if (argv[i].equals("-threads")) { // parse -threads option
+					threads = Integer.parseInt(argv[++i]);
+				} else if (argv[i].equals("-inflaters")) { // parse -inflaters option
+					inflaters = Integer.parseInt(argv[++i]);
+				} else if (argv[i].equals("-readers")) { // parse -readers option
+					readers = Integer.parseInt(argv[++i]);
+				} else if (argv[i].equals("-queue")) { // parse -queue option
+					queueSize = Integer.parseInt(argv[++i]);
+				} else if (argv[i].equals("-feedbackterms")) { // parse -feedbackterms option
+					feedbackTerms = Integer.parseInt(argv[++i]);
+				} else if (argv[i].equals("-profile")) { // parse -profile option
+					profile.load(new File(argv[++i]));
+				} else if (argv[i].equals("-ram")) { // parse -ram option
+					profile.set(IndexProfile.RAM_BUFFER_MB_FLD, argv[++i]);
+				} else if (argv[i].equals("-maxbuffered")) { // parse -maxbuffered option
+					profile.set(IndexProfile.MAX_BUFFERED_DOCS_FLD, argv[++i]);
+				} else if (argv[i].equals("-mergethreads")) { // parse -mergethreads option
+					profile.set(IndexProfile.MERGE_THREADS_FLD, argv[++i]);
+				} else if (argv[i].equals("-compound")) { // parse -compound option
+					profile.set(IndexProfile.COMPOUND_FILE_FLD, argv[++i]);
+				} else if (argv[i].equals("-forcemerge")) { // parse -forcemerge option
+					profile.set(IndexProfile.FORCE_MERGE_FLD, argv[++i]);
 				} else if (i != argv.length - 1) {
 					System.err.println("Usage: " + usage);
 					return;
@@ -73,10 +100,6 @@ public class IndexTrec {
 			}
 
 			Date start = new Date();
-			if (!create) { // delete stale docs
-				deleting = true;
-				indexDocs(root, index, create);
-			}
 
 			Directory dir = FSDirectory.open(index);
 		    Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_48);
@@ -91,13 +114,21 @@ public class IndexTrec {
 		        // Add new documents to an existing index:
 		        iwc.setOpenMode(OpenMode.CREATE_OR_APPEND);
 		    }
+		    profile.apply(iwc);
 
 		    writer = new IndexWriter(dir, iwc);
-		    indexDocs(root, index, create); // add new docs
+		    indexDocs(root, index, create); // add new docs, delete stale docs
 		    
-			writer.close();
+		    if (profile.getForceMerge() > 0) {
+		    	long forceStart = System.nanoTime();
+		    	writer.forceMerge(profile.getForceMerge());
+		    	profile.setForceMergeNanos(System.nanoTime() - forceStart);
+		    }
+			writer.close(); // waits for running merges
 			Date end = new Date();
 
+			System.out.println(profile.report());
+
 			System.out.print(end.getTime() - start.getTime());
 			System.out.println(" total milliseconds");
 		} catch (Exception e) {
@@ -109,104 +140,104 @@ public class IndexTrec {
 	}
 
 	/*
-	 * Walk directory hierarchy in uid order, while keeping uid iterator from /*
-	 * existing index in sync. Mismatches indicate one of: (a) old documents to
-	 * /* be deleted; (b) unchanged documents, to be left alone; or (c) new /*
-	 * documents, to be indexed.
+	 * Compare the bundles with the manifest of the existing index. Mismatches
+	 * indicate one of: (a) removed bundles, whose documents are deleted; 
+	 * (b) unchanged bundles, to be left alone; or (c) new or changed bundles,
+	 * whose documents are (re)indexed. The new manifest is committed with the
+	 * documents.
 	 */
 	private static void indexDocs(File file, File index, boolean create)
 			throws Exception {
 
 		if (!create) { // incrementally update
+			BundleManifest indexed = new BundleManifest(writer.getCommitData());
+			BundleManifest current = new BundleManifest();
+			ArrayList<File> bundles = new ArrayList<File>();
+			listBundles(file, bundles);
 			
+			ArrayList<File> changed = new ArrayList<File>();
+			HashSet<String> names = new HashSet<String>();
+			for (File bundle : bundles) {
+				String name = BundleManifest.name(file, bundle);
+				names.add(name);
+				if (!indexed.isUnchanged(name, bundle, current)) {
+					// documents of the old version are replaced
+					writer.deleteDocuments(new Term(Defs.FLD_BUNDLE, name));
+					changed.add(bundle);
+				}
+			}
+			int removed = 0;
+			for (String name : indexed.names()) {
+				if (!names.contains(name)) {
+					System.out.println("deleting " + name);
+					writer.deleteDocuments(new Term(Defs.FLD_BUNDLE, name));
+					removed++;
+				}
+			}
+			System.out.println(changed.size() + " of " + bundles.size() + " bundles changed, " + removed + " removed");
+			
+			indexDocs(file, changed, true, null);
+			writer.setCommitData(current.toCommitData());
 		} else {
-			indexDocs(file);
+			ArrayList<File> bundles = new ArrayList<File>();
+			listBundles(file, bundles);
+			
+			// the state of the bundles is recorded as they are read for indexing
+			BundleManifest current = new BundleManifest();
+			indexDocs(file, bundles, false, current);
+			writer.setCommitData(current.toCommitData());
         }
 	}
 
-	private static void indexDocs(File file) throws Exception {
+	/**
+	 * @param update - if true documents replace indexed documents with the same DOCNO
+	 * @param manifest - records the state of the bundles as they are read; null - not recorded
+	 */
+	private static void indexDocs(File root, List<File> bundles, boolean update, BundleManifest manifest) throws Exception {
+		// bundles are read, parsed and added by the threads of the pipeline
+		IndexPipeline pipeline = new IndexPipeline(writer, inflaters, readers, threads, queueSize);
+		pipeline.setUpdate(update);
+		pipeline.setManifest(manifest);
+		pipeline.setFeedbackTerms(writer.getAnalyzer(), feedbackTerms);
+		pipeline.index(root, bundles);
+		System.out.println(pipeline.getDocsAdded() + " of " + pipeline.getDocsRead() + " documents added");
+		System.out.println(pipeline.report());
+	}
+
+	/**
+	 * Adds bundle files (names start with B) under the file to the list in sorted order
+	 */
+	private static void listBundles(File file, List<File> bundles) {
 		if (file.isDirectory()) { // if a directory
 			String[] files = file.list(); // list its files
 			Arrays.sort(files); // sort the files
 			
             for (int i = 0; i < files.length; i++) {
-				// recursively index them
-				indexDocs(new File(file, files[i]));
+				// recursively list them
+				listBundles(new File(file, files[i]), bundles);
             }
 		} else if ( file.getPath().substring(file.getPath().lastIndexOf("/")+1).startsWith("B") ){
-//			System.out.println(file);
-			
-			System.out.println("adding " + file.getPath());
-			addDocuments(writer, file);
-		}
-	}
-
-	private static void addDocuments(IndexWriter writer, File file)
-			throws IOException, InterruptedException {
-		ArrayList<HashMap<String, String>> docsList = readDocs(file);
-		
-        for ( int i = 0; i < docsList.size(); i++) {
-			HashMap<String, String> docsMap = docsList.get(i);
-			String docNo = docsMap.get("DOCNO");
-			String html = docsMap.get("DOC");
-			InputStream is = new ByteArrayInputStream(html.getBytes("UTF-8"));
-			
-			System.out.println("[docNo--- "+docNo+" ---docNo]");
-			
-            Document doc = TrecDocument.Document(is, docNo);
-            if (doc != null)
-            	writer.addDocument(doc);
+			bundles.add(file);
 		}
 	}
 
+	/**
+	 * Reads all the documents of the file at once; 
+	 * to index a file use <code>TrecDocReader</code> to stream them.
+	 */
 	public static ArrayList<HashMap<String, String>> readDocs(File file) throws IOException {
-		BufferedReader reader=null;
-		GZIPInputStream in =null;
-		
-		if ( file.getPath().endsWith(".gz") ){
-			try {
-	            in = new GZIPInputStream(new FileInputStream(file));
-	            reader = new BufferedReader(new InputStreamReader(in));
-	        } catch (IOException e) {
-                e.printStackTrace();
-	        }
-		} else {
-			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),"UTF-8"));
-		}
-		
 		ArrayList<HashMap<String, String>> docsList = new ArrayList<HashMap<String, String>>();
+		TrecDocReader docs = new TrecDocReader(file);
 		try {
-			String line = null;
-			String sep = null;
-			String newline = System.getProperty("line.separator");
-
-			StringBuffer sb = null;
-			HashMap<String, String> docsMap = null;
-			while (null != (line=reader.readLine())) {
-				sep = newline;
-				if (line.equals("<DOC>")) {
-					sb = new StringBuffer();
-					docsMap = new HashMap<String, String>();
-					sep = "";
-				}
-               
-                sb.append(sep+line);
-                
-				if (line.startsWith("<DOCNO>")) {
-		    		int endIndex = line.indexOf("</DOCNO>");
-		    		String docNo = line.substring(7, endIndex);
-		    		docsMap.put("DOCNO", docNo);
-				}
-				
-				if (line.equals("</DOC>")) {
-					docsMap.put("DOC", sb.toString());
-					docsList.add(docsMap);
-				}
+			while (docs.next()) {
+				HashMap<String, String> docsMap = new HashMap<String, String>();
+				if (docs.getDocNo() != null)
+					docsMap.put("DOCNO", docs.getDocNo());
+				docsMap.put("DOC", docs.getDoc().toString());
+				docsList.add(docsMap);
 			}
 		} finally {
-			reader.close();
-			if ( in != null)
-				in.close();
+			docs.close();
 		}
 		return docsList;
 	}
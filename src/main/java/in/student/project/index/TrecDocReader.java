@@ -0,0 +1,114 @@
+package in.student.project.index;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the documents of a TREC bundle file (optionally gzipped) one at a time.
+ * <p>
+ * Text of the current document is kept in a buffer that is reused for the
+ * next document, so memory is bounded by the largest document of the bundle
+ * instead of the whole bundle. A document kept past <code>next()</code> is
+ * copied out of it with <code>getDoc().toString()</code>.
+ * <pre>
+ * TrecDocReader docs = new TrecDocReader(file);
+ * try {
+ *     while (docs.next()) {
+ *         index(docs.getDocNo(), docs.getDoc());
+ *     }
+ * } finally {
+ *     docs.close();
+ * }
+ * </pre>
+ */
+public class TrecDocReader implements Closeable {
+	/** Size of the buffers for reading and inflating bundles */
+	public static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final String newline = System.getProperty("line.separator");
+
+	private BufferedReader reader;
+	private StringBuilder doc = new StringBuilder();
+	private String docNo;
+	private boolean inDoc = false;
+
+	public TrecDocReader(File file) throws IOException {
+		if ( file.getPath().endsWith(".gz") ){
+			reader = decode(file, new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE));
+		} else {
+			reader = decode(file, new FileInputStream(file));
+		}
+	}
+
+	/**
+	 * @param file - the bundle the contents were read from
+	 * @param contents - of the bundle, already inflated if it is gzipped
+	 */
+	public TrecDocReader(File file, InputStream contents) throws IOException {
+		reader = decode(file, contents);
+	}
+
+	/**
+	 * Gzipped bundles are decoded with the platform charset, others as UTF-8
+	 */
+	private static BufferedReader decode(File file, InputStream contents) throws IOException {
+		if ( file.getPath().endsWith(".gz") ){
+			return new BufferedReader(new InputStreamReader(contents), BUFFER_SIZE);
+		} else {
+			return new BufferedReader(new InputStreamReader(contents,"UTF-8"), BUFFER_SIZE);
+		}
+	}
+
+	/**
+	 * Reads the next document: lines from <code>&lt;DOC&gt;</code> to
+	 * <code>&lt;/DOC&gt;</code> joined with the line separator.
+	 * Lines after <code>&lt;/DOC&gt;</code> still belong to the document until
+	 * the next <code>&lt;DOC&gt;</code>; so a repeated <code>&lt;/DOC&gt;</code>
+	 * returns the document again with those lines (as readDocs always did).
+	 *
+	 * @return false if there are no more documents
+	 */
+	public boolean next() throws IOException {
+		String line = null;
+		while (null != (line=reader.readLine())) {
+			if (line.equals("<DOC>")) {
+				doc.setLength(0);
+				docNo = null;
+				inDoc = true;
+			} else if (!inDoc) {
+				continue;
+			} else {
+				doc.append(newline);
+			}
+			doc.append(line);
+
+			if (line.startsWith("<DOCNO>")) {
+	    		int endIndex = line.indexOf("</DOCNO>");
+	    		docNo = line.substring(7, endIndex);
+			}
+
+			if (line.equals("</DOC>")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return DOCNO of the current document; null if it has none
+	 */
+	public String getDocNo() {
+		return docNo;
+	}
+
+	/**
+	 * @return text of the current document; valid only until <code>next()</code> is called
+	 */
+	public CharSequence getDoc() {
+		return doc;
+	}
+
+	public void close() throws IOException {
+		reader.close();
+	}
+}
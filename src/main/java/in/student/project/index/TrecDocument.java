@@ -21,8 +21,16 @@ import java.nio.CharBuffer;
 
 //import kr.ac.kaist.wikipedia.WikipediaManager;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.*;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import in.student.project.index.html.HTMLContent;
+import in.student.project.index.html.HTMLContentParser;
 import in.student.project.index.html.HTMLParser;
+import in.student.project.util.Defs;
+import in.student.project.util.FeedbackTerms;
+import in.student.project.util.Utils;
 
 /** 
  * A utility for making Lucene Documents for HTML documents.
@@ -30,6 +38,16 @@ import in.student.project.index.html.HTMLParser;
 public class TrecDocument {
     static char dirSep = System.getProperty("file.separator").charAt(0);
 
+    // one parser per indexing thread, reinitialized for each document
+    private static final ThreadLocal<HTMLContentParser> parsers = new ThreadLocal<HTMLContentParser>() {
+        protected HTMLContentParser initialValue() {
+            return new HTMLContentParser(new StringReader(""));
+        }
+    };
+
+    // weights the top terms as the searcher does
+    private static final TFIDFSimilarity similarity = new DefaultSimilarity();
+
     public static String uid(File f) {
         return f.getPath().replace(dirSep, '\u0000') +"\u0000" +
                 DateTools.timeToString(f.lastModified(), DateTools.Resolution.SECOND);
@@ -41,14 +59,45 @@ public class TrecDocument {
     }
 
     public static Document Document(InputStream is, String docNo) throws IOException, InterruptedException  {
+        HTMLContentParser parser = parsers.get();
+        parser.ReInit(is);
+        return Document(parser, docNo, null, 0);
+    }
+
+    /**
+     * Makes a document of already decoded html; the parser reads the characters
+     * directly, with no encoding to bytes and decoding back
+     */
+    public static Document Document(Reader html, String docNo) throws IOException, InterruptedException  {
+        return Document(html, docNo, null, 0);
+    }
+
+    /**
+     * Makes a document of already decoded html and stores the top terms of its
+     * contents for query expansion (<code>Defs.FLD_FEEDBACK_TERMS</code>)
+     *
+     * @param feedbackAnalyzer - of the index writer, so the terms are the indexed terms;
+     *                           null - no terms are stored
+     * @param feedbackTerms - number of terms to store; 0 - no terms are stored
+     */
+    public static Document Document(Reader html, String docNo, Analyzer feedbackAnalyzer, int feedbackTerms)
+            throws IOException, InterruptedException  {
+        HTMLContentParser parser = parsers.get();
+        parser.ReInit(html);
+        return Document(parser, docNo, feedbackAnalyzer, feedbackTerms);
+    }
+
+    private static Document Document(HTMLContentParser parser, String docNo, Analyzer feedbackAnalyzer, int feedbackTerms)
+            throws IOException, InterruptedException  {
         // make a new, empty document
         Document doc = new Document();
-        HTMLParser parser = new HTMLParser(is);
-        String parser_title = parser.getTitle();
+        // the document is parsed at once in this thread
+        HTMLContent parsed = parser.parse();
+        String parser_title = parsed.getTitle();
         if (parser_title.isEmpty()) {
         	try {
-	        	if (!parser.getContents().isEmpty())
-	        		parser_title = parser.getContents().substring(0, (parser.getContents().length() - 4 > parser.SUMMARY_LENGTH) ? parser.SUMMARY_LENGTH : parser.getContents().length());
+	        	if (!parsed.getContents().isEmpty())
+	        		parser_title = parsed.getContents().substring(0, (parsed.getContents().length() - 4 > HTMLParser.SUMMARY_LENGTH) ? HTMLParser.SUMMARY_LENGTH : parsed.getContents().length());
         	} catch (Exception e) {
         		System.out.println("parser title is empty");
         		return null;
@@ -58,7 +107,7 @@ public class TrecDocument {
         		return null;
         }
         
-        BufferedReader in = new BufferedReader(parser.getReader());
+        BufferedReader in = new BufferedReader(new StringReader(parsed.getText()));
         String line = null;
         StringBuilder rslt = new StringBuilder();
         while ((line = in.readLine()) != null) {
@@ -72,14 +121,22 @@ public class TrecDocument {
 		type.setIndexed(true);
 		type.setStored(true);
 		type.setStoreTermVectors(true);
-		if (parser.getContents().isEmpty())
-			doc.add(new Field("contents", rslt.toString().trim(), type));
+		String contents;
+		if (parsed.getContents().isEmpty())
+			contents = rslt.toString().trim();
 		else 
-			doc.add(new Field("contents", parser.getContents().trim(), type));
+			contents = parsed.getContents().trim();
+		doc.add(new Field("contents", contents, type));
+		// Number of terms of the contents; read at search time for length normalization
+		doc.add(new NumericDocValuesField(Defs.FLD_TEXT_LENGTH, Utils.getTermCount(contents)));
+		// Top terms of the contents; read at search time as feedback terms
+		if (feedbackAnalyzer != null && feedbackTerms > 0)
+			doc.add(new BinaryDocValuesField(Defs.FLD_FEEDBACK_TERMS, 
+					FeedbackTerms.encode(FeedbackTerms.analyze(feedbackAnalyzer, contents), feedbackTerms, similarity)));
 
         // Add the summary as a field that is stored and returned with
         // hit documents for display.
-        doc.add(new Field("summary", parser.getSummary(), Field.Store.YES, Field.Index.NO));
+        doc.add(new Field("summary", parsed.getSummary(), Field.Store.YES, Field.Index.NO));
 
         // Add the title as a field that it can be searched and that is stored.
         doc.add(new Field("title", parser_title, type));
@@ -0,0 +1,47 @@
+package in.student.project.index.html;
+
+import java.util.Properties;
+
+/**
+ * What <code>HTMLContentParser.parse()</code> extracts from an HTML document.
+ */
+public class HTMLContent {
+  private final String title;
+  private final String summary;
+  private final Properties metaTags;
+  private final String contents;
+  private final String text;
+
+  HTMLContent(String title, String summary, Properties metaTags, String contents, String text) {
+    this.title = title;
+    this.summary = summary;
+    this.metaTags = metaTags;
+    this.contents = contents;
+    this.text = text;
+  }
+
+  /** Title of the document, trimmed; as <code>HTMLParser.getTitle()</code> */
+  public String getTitle() {
+    return title;
+  }
+
+  /** First <code>HTMLParser.SUMMARY_LENGTH</code> characters of the body; the title if the body is empty */
+  public String getSummary() {
+    return summary;
+  }
+
+  /** Meta tags; lower cased name - content */
+  public Properties getMetaTags() {
+    return metaTags;
+  }
+
+  /** Text of the body */
+  public String getContents() {
+    return contents;
+  }
+
+  /** All the text of the document; as read from <code>HTMLParser.getReader()</code> */
+  public String getText() {
+    return text;
+  }
+}
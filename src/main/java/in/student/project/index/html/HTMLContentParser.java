@@ -0,0 +1,107 @@
+package in.student.project.index.html;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * HTMLParser that parses the whole document in the caller's thread and can
+ * be reused for the next document with <code>ReInit</code>.
+ * <p>
+ * HTMLParser is generated by JavaCC, so what it lacks for this is added here
+ * instead of to the generated code.
+ * <pre>
+ * HTMLContentParser parser = new HTMLContentParser(new StringReader(""));
+ * for (Reader html : documents) {
+ *     parser.ReInit(html);
+ *     HTMLContent content = parser.parse();
+ * }
+ * </pre>
+ */
+public class HTMLContentParser extends HTMLParser {
+  // title as it was when the body started; null until then
+  private String completedTitle = null;
+
+  public HTMLContentParser(InputStream stream) {
+    super(stream);
+  }
+
+  public HTMLContentParser(Reader stream) {
+    super(stream);
+  }
+
+  /**
+   * Parses the whole document in the caller's thread; no parsing thread,
+   * pipe or waiting is involved. Use either this or the getters, not both.
+   */
+  public HTMLContent parse() throws IOException {
+    if (pipeIn != null)
+      throw new IllegalStateException("document is already parsed by getReader()");
+    StringWriter text = new StringWriter();
+    pipeOut = text;
+    try {
+      HTMLDocument();
+    } catch (ParseException e) {
+      System.out.println("Parse Aborted: " + e.getMessage()); //$NON-NLS-1$
+    } catch (TokenMgrError e) {
+      System.out.println("Parse Aborted: " + e.getMessage()); //$NON-NLS-1$
+    }
+    titleComplete = true;
+
+    // title as it was when the body started, like getTitle() returns it
+    String fullTitle = title.toString().trim();
+    String title_str = (completedTitle != null) ? completedTitle.trim() : fullTitle;
+
+    if (summary.length() > SUMMARY_LENGTH)
+      summary.setLength(SUMMARY_LENGTH);
+    String sum = summary.toString().trim();
+    if (sum.equals(""))
+      sum = fullTitle;
+
+    return new HTMLContent(title_str, sum, metaTags, contents.toString(), text.toString());
+  }
+
+  /** Reinitialise for the next document; what was extracted from the previous one is forgotten */
+  public void ReInit(InputStream stream, String encoding) {
+    super.ReInit(stream, encoding);
+    resetDocument();
+  }
+
+  /** Reinitialise for the next document; what was extracted from the previous one is forgotten */
+  public void ReInit(Reader stream) {
+    super.ReInit(stream);
+    resetDocument();
+  }
+
+  /** Keeps the title as it is when the body starts */
+  void addText(String text) throws IOException {
+    boolean wasComplete = titleComplete;
+    super.addText(text);
+    if (!wasComplete && titleComplete)
+      completedTitle = title.toString();
+  }
+
+  /**
+   * Forgets what was extracted from the previous document, so the parser
+   * can be reused; buffers are kept. Must not be called while a parsing
+   * thread started by getReader() is running.
+   */
+  private void resetDocument() {
+    title.setLength(0);
+    summary.setLength(0);
+    contents.setLength(0);
+    metaTags = new Properties();                  // handed out with the previous result
+    currentMetaTag = null;
+    currentMetaContent = null;
+    length = 0;
+    titleComplete = false;
+    completedTitle = null;
+    inTitle = false;
+    inBody = false;
+    inMetaTag = false;
+    inStyle = false;
+    afterTag = false;
+    afterSpace = false;
+    pipeIn = null;                                // getReader() opens a new pipe
+    pipeOut = null;
+  }
+}
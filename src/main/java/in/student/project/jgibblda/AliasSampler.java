@@ -0,0 +1,341 @@
+package in.student.project.jgibblda;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Metropolis-Hastings sampler with alias tables (AliasLDA: Li, Ahmed, Ravi
+ * and Smola 2014; LightLDA: Yuan et al. 2015) for estimation with many topics.
+ * <p>
+ * The topic of a word is not drawn from its conditional
+ * <pre>
+ * p(k) = (nd[m][k] + alpha)(nw[w][k] + beta) / (nwsum[k] + V * beta)
+ * </pre>
+ * but by a short Metropolis-Hastings chain that alternates two proposals,
+ * each drawn in O(1):
+ * <ul>
+ * <li>word proposal (nw[w][k] + beta) / (nwsum[k] + V * beta): a mixture of
+ * an alias table of the topics of the word and an alias table of beta /
+ * (nwsum[k] + V * beta) shared by all the words</li>
+ * <li>document proposal nd[m][k] + alpha: the topic of a random other word
+ * of the document, or a random topic</li>
+ * </ul>
+ * A proposal t is accepted over the current topic s with probability
+ * min(1, p(t) q(s) / (p(s) q(t))). Building a table of K topics costs O(K),
+ * so a table is reused for K draws, although the counts it was built from
+ * become stale meanwhile; the acceptance uses the probabilities of the
+ * table, which corrects for most of the difference. So the cost of a word
+ * does not depend on K.
+ * <p>
+ * Tables built since the word being sampled got its topic count the word
+ * itself; the word is left out of the proposal (draws of its topic from the
+ * word table are rejected in proportion, and the smoothing weight it lacks
+ * is proposed separately), or the proposal would depend on the topic being
+ * sampled, which skews the samples of rare words and small topics. The
+ * samples follow the distribution of the dense sampler closely, but not
+ * exactly, as the tables are stale.
+ */
+public class AliasSampler implements Sampler {
+	// proposals (a word and a document proposal) per word
+	public static final int MH_STEPS = 2;
+
+	private final Model model;
+	private final SplittableRandom random; //of the model
+	private final int K;
+	private final double alpha, beta, Vbeta;
+
+	private final WordTable [] wordTables; //built on first use
+	private final AliasTable smoothing; //beta / (nwsum[k] + V * beta)
+	private final double [] smoothingWeights;
+	private final int [] smoothingSums; //nwsum[k] when built
+	private double smoothingMass;
+	private int smoothingDraws;
+	private long smoothingBuilt;
+
+	private long clock; //words sampled so far; when the tables were built
+	private final long [] docSampled; //clock of the first word of each document when last sampled; -1 - not yet
+	private long wordSampled; //clock when the current word got its topic; -1 - initial topic
+	// the current word, left out of the tables of the last proposeWord
+	private int ownTopic;
+	private int ownIndex; //of its topic in the word table that counts it; -1 - not counted
+	private double ownWeight; //of its topic in the word table without it
+	private double ownSmoothing; //smoothing weight of its topic without it, less the weight in the table
+
+	/** Proposal of the topics of a word: nw[w][k] / (nwsum[k] + V * beta) of the topics with nw[w][k] > 0 */
+	private static class WordTable {
+		int [] topics = new int[0]; //first size, in increasing order
+		double [] weights = new double[0];
+		int [] counts = new int[0]; //nw[w][k] and nwsum[k] of the topics when built
+		int [] sums = new int[0];
+		int size;
+		double mass;
+		AliasTable alias = new AliasTable(0);
+		int draws;
+		long built; //clock when built
+	}
+
+	public AliasSampler(Model model){
+		this.model = model;
+		random = model.random;
+		K = model.K;
+		alpha = model.alpha;
+		beta = model.beta;
+		Vbeta = model.V * beta;
+
+		wordTables = new WordTable[model.V];
+		smoothing = new AliasTable(K);
+		smoothingWeights = new double[K];
+		smoothingSums = new int[K];
+		buildSmoothing();
+		clock++; //the table counts the first word
+
+		docSampled = new long[model.M];
+		Arrays.fill(docSampled, -1);
+	}
+
+	/**
+	 * Samples topics of all the words of document m; sets them in z
+	 */
+	public void sample(int m){
+		Document doc = model.data.docs[m];
+		int offset = model.zOffset[m];
+		long last = docSampled[m];
+		docSampled[m] = clock;
+		for (int n = 0; n < doc.length; n++, clock++){
+			int w = doc.words[n];
+			int s0 = model.z[offset + n];
+			wordSampled = last < 0 ? -1 : last + n;
+
+			// remove z_i from the count variables
+			model.nw[w][s0] -= 1;
+			model.nd[m][s0] -= 1;
+			model.nwsum[s0] -= 1;
+			model.ndsum[m] -= 1;
+
+			int topic = s0;
+			double pTopic = p(m, w, topic);
+			for (int step = 0; step < MH_STEPS; step++){
+				// word proposal
+				int t = proposeWord(w, s0);
+				if (t != topic){
+					double pt = p(m, w, t);
+					if (random.nextDouble() * pTopic * qWord(w, t) < pt * qWord(w, topic)){
+						topic = t;
+						pTopic = pt;
+					}
+				}
+
+				// document proposal
+				t = proposeDoc(offset, n, doc.length);
+				if (t != topic){
+					double pt = p(m, w, t);
+					if (random.nextDouble() * pTopic * (model.nd[m][t] + alpha) < pt * (model.nd[m][topic] + alpha)){
+						topic = t;
+						pTopic = pt;
+					}
+				}
+			}
+
+			// add newly estimated z_i to count variables
+			model.nw[w][topic] += 1;
+			model.nd[m][topic] += 1;
+			model.nwsum[topic] += 1;
+			model.ndsum[m] += 1;
+			model.z[offset + n] = topic;
+		}
+	}
+
+	/**
+	 * Rebuilds the smoothing table; the tables of the words are rebuilt on
+	 * their next use (their arrays are reused)
+	 */
+	public void refresh(){
+		for (WordTable table : wordTables){
+			if (table != null)
+				table.draws = K;
+		}
+		buildSmoothing();
+		clock++; //the table counts the next word
+	}
+
+	/**
+	 * Conditional of topic k without the factor that is the same for all topics
+	 */
+	private double p(int m, int w, int k){
+		return (model.nd[m][k] + alpha) * (model.nw[w][k] + beta) / (model.nwsum[k] + Vbeta);
+	}
+
+	/**
+	 * @param s0 - topic of the current word before it is sampled
+	 */
+	private int proposeWord(int w, int s0){
+		WordTable table = wordTables[w];
+		if (table == null || table.draws >= K){
+			// O(K) for K draws
+			table = buildWordTable(w);
+		}
+		if (smoothingDraws >= K){
+			buildSmoothing();
+		}
+		table.draws++;
+
+		// the current word is left out of the tables built after it got its topic
+		ownTopic = s0;
+		ownIndex = -1;
+		double mass = table.mass;
+		if (wordSampled < table.built && table.built < clock){
+			int i = Arrays.binarySearch(table.topics, 0, table.size, s0);
+			if (i >= 0){
+				ownIndex = i;
+				ownWeight = (table.counts[i] - 1) / (table.sums[i] - 1 + Vbeta);
+				mass = table.size == 1 ? ownWeight : mass - table.weights[i] + ownWeight;
+			}
+		}
+		ownSmoothing = 0;
+		if (wordSampled < smoothingBuilt && smoothingBuilt < clock && smoothingSums[s0] > 0)
+			ownSmoothing = beta / (smoothingSums[s0] - 1 + Vbeta) - smoothingWeights[s0];
+
+		double u = random.nextDouble() * (mass + ownSmoothing + smoothingMass);
+		if (u < mass){
+			while (true){
+				int i = table.alias.sample(random);
+				if (i != ownIndex || random.nextDouble() * table.weights[i] < ownWeight)
+					return table.topics[i];
+			}
+		}
+		if (u < mass + ownSmoothing)
+			return s0;
+		smoothingDraws++;
+		return smoothing.sample(random);
+	}
+
+	/**
+	 * Probability (not normalized) of proposing topic k by the last proposeWord; from the tables, not the counts
+	 */
+	private double qWord(int w, int k){
+		WordTable table = wordTables[w];
+		int i = Arrays.binarySearch(table.topics, 0, table.size, k);
+		double weight = i < 0 ? 0 : i == ownIndex ? ownWeight : table.weights[i];
+		return weight + smoothingWeights[k] + (k == ownTopic ? ownSmoothing : 0);
+	}
+
+	/**
+	 * Proposes topic k with probability proportional to nd[m][k] + alpha, nd[m] without word n
+	 */
+	private int proposeDoc(int offset, int n, int length){
+		// the topic of a random word of the others (z of word n is not updated yet)
+		if (random.nextDouble() * (length - 1 + K * alpha) < length - 1){
+			int i = random.nextInt(length - 1);
+			return model.z[offset + (i < n ? i : i + 1)];
+		}
+		return random.nextInt(K);
+	}
+
+	private WordTable buildWordTable(int w){
+		int [] nw = model.nw[w];
+		int count = 0;
+		for (int k = 0; k < K; k++){
+			if (nw[k] > 0)
+				count++;
+		}
+
+		// the arrays of the previous table are reused while large enough
+		WordTable table = wordTables[w];
+		if (table == null)
+			table = wordTables[w] = new WordTable();
+		if (table.topics.length < count){
+			int capacity = Math.min(K, Math.max(count, 2 * table.topics.length));
+			table.topics = new int[capacity];
+			table.weights = new double[capacity];
+			table.counts = new int[capacity];
+			table.sums = new int[capacity];
+			table.alias = new AliasTable(capacity);
+		}
+		table.size = count;
+		table.mass = 0;
+		table.draws = 0;
+		table.built = clock;
+		int i = 0;
+		for (int k = 0; k < K; k++){
+			if (nw[k] > 0){
+				table.topics[i] = k;
+				table.counts[i] = nw[k];
+				table.sums[i] = model.nwsum[k];
+				table.weights[i] = nw[k] / (model.nwsum[k] + Vbeta);
+				table.mass += table.weights[i];
+				i++;
+			}
+		}
+		table.alias.build(table.weights, count);
+		return table;
+	}
+
+	private void buildSmoothing(){
+		smoothingMass = 0;
+		for (int k = 0; k < K; k++){
+			smoothingSums[k] = model.nwsum[k];
+			smoothingWeights[k] = beta / (model.nwsum[k] + Vbeta);
+			smoothingMass += smoothingWeights[k];
+		}
+		smoothing.build(smoothingWeights, K);
+		smoothingDraws = 0;
+		smoothingBuilt = clock;
+	}
+
+	/**
+	 * Walker's alias method (Vose's construction): draws i with probability
+	 * weights[i] / sum(weights) in O(1) after O(n) construction
+	 */
+	static class AliasTable {
+		private final double [] prob;
+		private final int [] alias;
+		private final int [] small, large; //work lists of build
+		private int n;
+
+		AliasTable(int capacity){
+			prob = new double[capacity];
+			alias = new int[capacity];
+			small = new int[capacity];
+			large = new int[capacity];
+		}
+
+		/**
+		 * Builds the table of the first n weights
+		 */
+		void build(double [] weights, int n){
+			this.n = n;
+			double sum = 0;
+			for (int i = 0; i < n; i++){
+				sum += weights[i];
+			}
+			int ns = 0, nl = 0;
+			for (int i = 0; i < n; i++){
+				prob[i] = weights[i] * n / sum;
+				if (prob[i] < 1)
+					small[ns++] = i;
+				else
+					large[nl++] = i;
+			}
+			while (ns > 0 && nl > 0){
+				int l = small[--ns];
+				int g = large[--nl];
+				alias[l] = g;
+				prob[g] = (prob[g] + prob[l]) - 1;
+				if (prob[g] < 1)
+					small[ns++] = g;
+				else
+					large[nl++] = g;
+			}
+			// left over by rounding
+			while (nl > 0)
+				prob[large[--nl]] = 1;
+			while (ns > 0)
+				prob[small[--ns]] = 1;
+		}
+
+		int sample(SplittableRandom random){
+			int i = random.nextInt(n);
+			return random.nextDouble() < prob[i] ? i : alias[i];
+		}
+	}
+}
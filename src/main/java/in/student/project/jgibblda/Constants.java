@@ -36,4 +36,8 @@ public class Constants {
 	public static final int MODEL_STATUS_EST = 1;
 	public static final int MODEL_STATUS_ESTC = 2;
 	public static final int MODEL_STATUS_INF = 3;
+	
+	public static final String SAMPLER_DENSE = "dense";
+	public static final String SAMPLER_SPARSE = "sparse";
+	public static final String SAMPLER_ALIAS = "alias";
 }
@@ -29,13 +29,39 @@
 package in.student.project.jgibblda;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Gibbs sampling estimation of the model.
+ * <p>
+ * With more than one thread (option -threads) the estimation is the
+ * approximate distributed LDA (AD-LDA) of Newman, Asuncion, Smyth and Welling
+ * (Distributed algorithms for topic models, 2009): the docs are split into
+ * one range per thread, of about the same number of words, and each thread
+ * samples its docs with its own copy of nw and nwsum. After each iteration
+ * the changes of the copies are added up into the counts of the model, and
+ * the copies are reset to them. Within an iteration a thread does not see
+ * the changes of the others, so the samples are not exactly those of the
+ * sequential sampler.
+ */
 public class Estimator {
 	
 	// output model
 	protected Model trnModel;
 	LDACmdOption option;
+	// samples a document at a time; null - sampling() samples each word
+	protected Sampler sampler;
+	
+	// parallel estimation: workers[i] samples docs workerDocs[i] to workerDocs[i + 1] - 1
+	protected Estimator [] workers;
+	protected int [] workerDocs;
 	
 	public boolean init(LDACmdOption option){
 		this.option = option;
@@ -51,35 +77,81 @@ public class Estimator {
 				return false;
 		}
 		
+		if (!option.sampler.equals(Constants.SAMPLER_SPARSE) && !option.sampler.equals(Constants.SAMPLER_ALIAS)
+				&& !option.sampler.equals(Constants.SAMPLER_DENSE))
+			throw new IllegalArgumentException("Unknown sampler: " + option.sampler);
+		if (option.threads < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + option.threads);
+		
+		if (option.threads == 1){
+			sampler = newSampler(trnModel);
+		}
+		else {
+			// split the docs into ranges of about the same number of words
+			workers = new Estimator[option.threads];
+			workerDocs = new int[option.threads + 1];
+			int m = 0;
+			for (int i = 0; i < option.threads; i++){
+				long words = (long) trnModel.zOffset[trnModel.M] * (i + 1) / option.threads;
+				while (m < trnModel.M && trnModel.zOffset[m] < words){
+					m++;
+				}
+				workerDocs[i + 1] = m;
+				
+				workers[i] = new Estimator();
+				workers[i].option = option;
+				workers[i].trnModel = trnModel.copyForWorker();
+				workers[i].sampler = newSampler(workers[i].trnModel);
+			}
+		}
+		
 		return true;
 	}
 	
+	/**
+	 * sampler of the option for the model; null - sampling() samples each word
+	 */
+	private Sampler newSampler(Model model){
+		if (option.sampler.equals(Constants.SAMPLER_SPARSE))
+			return new SparseSampler(model);
+		if (option.sampler.equals(Constants.SAMPLER_ALIAS))
+			return new AliasSampler(model);
+		return null;
+	}
+	
 	public void estimate(){
 		System.out.println("Sampling " + trnModel.niters + " iteration!");
 		
-		int lastIter = trnModel.liter;
-		for (trnModel.liter = lastIter + 1; trnModel.liter < trnModel.niters + lastIter; trnModel.liter++){
-			System.out.println("Iteration " + trnModel.liter + " ...");
-			
-			// for all z_i
-			for (int m = 0; m < trnModel.M; m++){				
-				for (int n = 0; n < trnModel.data.docs[m].length; n++){
-					// z_i = z[m][n]
-					// sample from p(z_i|z_-i, w)
-					int topic = sampling(m, n);
-					trnModel.z[m].set(n, topic);
-				}// end for each word
-			}// end for each document
-			
-			if (option.savestep > 0){
-				if (trnModel.liter % option.savestep == 0){
-					System.out.println("Saving the model at iteration " + trnModel.liter + " ...");
-					computeTheta();
-					computePhi();
-					trnModel.saveModel("model-" + Conversion.ZeroPad(trnModel.liter, 5));
+		ExecutorService pool = workers != null ? Executors.newFixedThreadPool(workers.length) : null;
+		try {
+			int lastIter = trnModel.liter;
+			for (trnModel.liter = lastIter + 1; trnModel.liter < trnModel.niters + lastIter; trnModel.liter++){
+				System.out.println("Iteration " + trnModel.liter + " ...");
+				
+				// for all z_i
+				if (pool != null){
+					parallelIteration(pool);
 				}
-			}
-		}// end iterations		
+				else {
+					for (int m = 0; m < trnModel.M; m++){
+						sample(m);
+					}
+				}
+				
+				if (option.savestep > 0){
+					if (trnModel.liter % option.savestep == 0){
+						System.out.println("Saving the model at iteration " + trnModel.liter + " ...");
+						computeTheta();
+						computePhi();
+						trnModel.saveModel("model-" + Conversion.ZeroPad(trnModel.liter, 5));
+					}
+				}
+			}// end iterations
+		}
+		finally {
+			if (pool != null)
+				pool.shutdownNow();
+		}
 		
 		System.out.println("Gibbs sampling completed!\n");
 		System.out.println("Saving the final model!\n");
@@ -89,6 +161,122 @@ public class Estimator {
 		trnModel.saveModel("model-final");
 	}
 	
+	/**
+	 * Sample the topics of all the words of document m
+	 */
+	protected void sample(int m){
+		if (sampler != null){
+			sampler.sample(m);
+			return;
+		}
+		for (int n = 0; n < trnModel.data.docs[m].length; n++){
+			// z_i = z[m][n]
+			// sample from p(z_i|z_-i, w)
+			int topic = sampling(m, n);
+			trnModel.z[trnModel.zOffset[m] + n] = topic;
+		}// end for each word
+	}
+	
+	/**
+	 * One iteration of AD-LDA: the workers sample their docs with their
+	 * counts, then the counts are merged
+	 */
+	private void parallelIteration(ExecutorService pool){
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < workers.length; i++){
+			final Estimator worker = workers[i];
+			final int begin = workerDocs[i], end = workerDocs[i + 1];
+			tasks.add(new Callable<Void>(){
+				public Void call(){
+					for (int m = begin; m < end; m++){
+						worker.sample(m);
+					}
+					return null;
+				}
+			});
+		}
+		runAll(pool, tasks);
+		
+		// nw: each task merges a range of words in all the copies
+		tasks.clear();
+		for (int i = 0; i < workers.length; i++){
+			final int begin = (int)((long) trnModel.V * i / workers.length);
+			final int end = (int)((long) trnModel.V * (i + 1) / workers.length);
+			tasks.add(new Callable<Void>(){
+				public Void call(){
+					int [][] copies = new int[workers.length][];
+					for (int w = begin; w < end; w++){
+						for (int j = 0; j < workers.length; j++){
+							copies[j] = workers[j].trnModel.nw[w];
+						}
+						mergeCounts(trnModel.nw[w], copies);
+					}
+					return null;
+				}
+			});
+		}
+		runAll(pool, tasks);
+		
+		int [][] copies = new int[workers.length][];
+		for (int j = 0; j < workers.length; j++){
+			copies[j] = workers[j].trnModel.nwsum;
+		}
+		mergeCounts(trnModel.nwsum, copies);
+		
+		// the samplers keep what they need of the counts that changed in the merge
+		tasks.clear();
+		for (final Estimator worker : workers){
+			if (worker.sampler == null)
+				continue;
+			tasks.add(new Callable<Void>(){
+				public Void call(){
+					worker.sampler.refresh();
+					return null;
+				}
+			});
+		}
+		runAll(pool, tasks);
+	}
+	
+	/**
+	 * Adds the changes of the copies of the counts to counts, then sets the
+	 * copies to the sums
+	 * @param counts row of nw or nwsum of the model
+	 * @param copies the same row in the workers
+	 */
+	private static void mergeCounts(int [] counts, int [][] copies){
+		for (int k = 0; k < counts.length; k++){
+			int sum = counts[k];
+			for (int [] copy : copies){
+				sum += copy[k] - counts[k];
+			}
+			counts[k] = sum;
+		}
+		for (int [] copy : copies){
+			System.arraycopy(counts, 0, copy, 0, counts.length);
+		}
+	}
+	
+	/**
+	 * Runs the tasks in the pool; returns when all of them are done
+	 */
+	private static void runAll(ExecutorService pool, List<Callable<Void>> tasks){
+		try {
+			for (Future<Void> result : pool.invokeAll(tasks)){
+				result.get();
+			}
+		}
+		catch (ExecutionException e){
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+	
 	/**
 	 * Do sampling
 	 * @param m document number
@@ -97,7 +285,7 @@ public class Estimator {
 	 */
 	public int sampling(int m, int n){
 		// remove z_i from the count variable
-		int topic = trnModel.z[m].get(n);
+		int topic = trnModel.z[trnModel.zOffset[m] + n];
 		int w = trnModel.data.docs[m].words[n];
 		
 		trnModel.nw[w][topic] -= 1;
@@ -120,7 +308,7 @@ public class Estimator {
 		}
 		
 		// scaled sample because of unnormalized p[]
-		double u = Math.random() * trnModel.p[trnModel.K - 1];
+		double u = trnModel.random.nextDouble() * trnModel.p[trnModel.K - 1];
 		
 		for (topic = 0; topic < trnModel.K; topic++){
 			if (trnModel.p[topic] > u) //sample topic w.r.t distribution p
@@ -41,7 +41,7 @@ public class Inferencer {
 	public Dictionary globalDict;
 	private LDACmdOption option;
 	
-	private Model newModel;
+	// the model being inferred is kept by each call, so calls can run concurrently
 	public int niters = 100;
 	
 	//-----------------------------------------------------
@@ -51,6 +51,9 @@ public class Inferencer {
 		this.option = option;
 		trnModel = new Model();
 		
+		if (!option.sampler.equals(Constants.SAMPLER_SPARSE) && !option.sampler.equals(Constants.SAMPLER_ALIAS)
+				&& !option.sampler.equals(Constants.SAMPLER_DENSE))
+			throw new IllegalArgumentException("Unknown sampler: " + option.sampler);
 		if (!trnModel.initEstimatedModel(option))
 			return false;		
 		
@@ -67,7 +70,7 @@ public class Inferencer {
 		Model newModel = new Model();		
 		
 		newModel.initNewModel(option, newData, trnModel);		
-		this.newModel = newModel;		
+		Sampler sampler = newSampler(newModel);
 		
 		System.out.println("Sampling " + niters + " iteration for inference!");		
 		for (newModel.liter = 1; newModel.liter <= niters; newModel.liter++){
@@ -75,11 +78,15 @@ public class Inferencer {
 			
 			// for all newz_i
 			for (int m = 0; m < newModel.M; ++m){
+				if (sampler != null){
+					sampler.sample(m);
+					continue;
+				}
 				for (int n = 0; n < newModel.data.docs[m].length; n++){
 					// (newz_i = newz[m][n]
 					// sample from p(z_i|z_-1,w)
-					int topic = infSampling(m, n);
-					newModel.z[m].set(n, topic);
+					int topic = infSampling(newModel, m, n);
+					newModel.z[newModel.zOffset[m] + n] = topic;
 				}
 			}//end foreach new doc
 			
@@ -87,10 +94,10 @@ public class Inferencer {
 		
 		System.out.println("Gibbs sampling for inference completed!");
 		
-		computeNewTheta();
-		computeNewPhi();
+		computeNewTheta(newModel);
+		computeNewPhi(newModel);
 		newModel.liter--;
-		return this.newModel;
+		return newModel;
 	}
 	
 	public Model inference(String [] strs){
@@ -107,8 +114,9 @@ public class Inferencer {
 	public Model inference(){	
 		//System.out.println("inference");
 		
-		newModel = new Model();
+		Model newModel = new Model();
 		if (!newModel.initNewModel(option, trnModel)) return null;
+		Sampler sampler = newSampler(newModel);
 		
 		System.out.println("Sampling " + niters + " iteration for inference!");
 		
@@ -117,11 +125,15 @@ public class Inferencer {
 			
 			// for all newz_i
 			for (int m = 0; m < newModel.M; ++m){
+				if (sampler != null){
+					sampler.sample(m);
+					continue;
+				}
 				for (int n = 0; n < newModel.data.docs[m].length; n++){
 					// (newz_i = newz[m][n]
 					// sample from p(z_i|z_-1,w)
-					int topic = infSampling(m, n);
-					newModel.z[m].set(n, topic);
+					int topic = infSampling(newModel, m, n);
+					newModel.z[newModel.zOffset[m] + n] = topic;
 				}
 			}//end foreach new doc
 			
@@ -130,22 +142,33 @@ public class Inferencer {
 		System.out.println("Gibbs sampling for inference completed!");		
 		System.out.println("Saving the inference outputs!");
 		
-		computeNewTheta();
-		computeNewPhi();
+		computeNewTheta(newModel);
+		computeNewPhi(newModel);
 		newModel.liter--;
 		newModel.saveModel(newModel.dfile + "." + newModel.modelName);		
 		
 		return newModel;
 	}
 	
+	/**
+	 * sampler of the option for the new model; null - infSampling samples each word.
+	 * The alias sampler is for estimation; inference, where the counts of the
+	 * trained model are added, uses the sparse sampler for it.
+	 */
+	private Sampler newSampler(Model newModel){
+		if (option.sampler.equals(Constants.SAMPLER_SPARSE) || option.sampler.equals(Constants.SAMPLER_ALIAS))
+			return new SparseSampler(newModel, trnModel);
+		return null;
+	}
+	
 	/**
 	 * do sampling for inference
 	 * m: document number
 	 * n: word number?
 	 */
-	protected int infSampling(int m, int n){
+	protected int infSampling(Model newModel, int m, int n){
 		// remove z_i from the count variables
-		int topic = newModel.z[m].get(n);
+		int topic = newModel.z[newModel.zOffset[m] + n];
 		int _w = newModel.data.docs[m].words[n];
 		int w = newModel.data.lid2gid.get(_w);
 		newModel.nw[_w][topic] -= 1;
@@ -168,7 +191,7 @@ public class Inferencer {
 		}
 		
 		// scaled sample because of unnormalized p[]
-		double u = Math.random() * newModel.p[newModel.K - 1];
+		double u = newModel.random.nextDouble() * newModel.p[newModel.K - 1];
 		
 		for (topic = 0; topic < newModel.K; topic++){
 			if (newModel.p[topic] > u)
@@ -184,7 +207,7 @@ public class Inferencer {
 		return topic;
 	}
 	
-	protected void computeNewTheta(){
+	protected void computeNewTheta(Model newModel){
 		for (int m = 0; m < newModel.M; m++){
 			for (int k = 0; k < newModel.K; k++){
 				newModel.theta[m][k] = (newModel.nd[m][k] + newModel.alpha) / (newModel.ndsum[m] + newModel.K * newModel.alpha);
@@ -192,7 +215,7 @@ public class Inferencer {
 		}//end foreach new document
 	}
 	
-	protected void computeNewPhi(){
+	protected void computeNewPhi(Model newModel){
 		for (int k = 0; k < newModel.K; k++){
 			for (int _w = 0; _w < newModel.V; _w++){
 				Integer id = newModel.data.lid2gid.get(_w);
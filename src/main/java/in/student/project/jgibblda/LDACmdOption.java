@@ -45,4 +45,13 @@ public class LDACmdOption {
 	
 	@Option(name="-wordmap", usage="Specify the wordmap file")
 	public String wordMapFileName = "wordmap.txt";
+	
+	@Option(name="-threads", usage="Specify the number of threads sampling in estimation (AD-LDA)")
+	public int threads = 1;
+	
+	@Option(name="-seed", usage="Specify the seed of the random numbers, to repeat a run (negative - a new seed each run)")
+	public long seed = -1;
+	
+	@Option(name="-sampler", usage="Specify the Gibbs sampler: dense (all topics for each word), sparse (SparseLDA) or alias (Metropolis-Hastings with alias tables, estimation only)")
+	public String sampler = Constants.SAMPLER_DENSE;
 }
@@ -13,7 +13,7 @@ public class LDAInferencer {
 	private Inferencer inferencer;
 	
 	// For inferencing
-	public static LDAInferencer getInstance(String modelDir, String modelName)
+	public static synchronized LDAInferencer getInstance(String modelDir, String modelName)
 	{
 		if(wrapper == null)
 			wrapper = new LDAInferencer(modelDir, modelName);
@@ -34,7 +34,7 @@ public class LDAInferencer {
 	}
 	
 	// For learning
-	public static LDAInferencer getInstance()
+	public static synchronized LDAInferencer getInstance()
 	{
 		if(wrapper == null)
 			wrapper = new LDAInferencer();
@@ -46,6 +46,7 @@ public class LDAInferencer {
 		
 	}
 	
+	// every inference has its own model, so threads can extract topics concurrently
 	public Topic [] extractTopicViaLDA(String [] input)
 	{
 		Topic t [] = new Topic[input.length];
@@ -37,11 +37,12 @@ import java.io.FileWriter;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.StringTokenizer;
-import java.util.Vector;
 
 public class Model {	
 	
@@ -83,7 +84,8 @@ public class Model {
 	public double [][] phi; // phi: topic-word distributions, size K x V
 	
 	// Temp variables while sampling
-	public Vector<Integer> [] z; //topic assignments for words, size M x doc.size()
+	public int [] z; //topic assignments for words of all the docs, doc after doc; word n of doc m is z[zOffset[m] + n]
+	public int [] zOffset; //zOffset[m]: index in z of the first word of document m, size M + 1
 	protected int [][] nw; //nw[i][j]: number of instances of word/term i assigned to topic j, size V x K
 	protected int [][] nd; //nd[i][j]: number of words in document i assigned to topic j, size M x K
 	protected int [] nwsum; //nwsum[j]: total number of words assigned to topic j, size K
@@ -91,6 +93,8 @@ public class Model {
 	
 	// temp variables for sampling
 	protected double [] p; 
+	// random numbers of the thread sampling the model; seeded by option -seed
+	protected SplittableRandom random;
 	
 	//---------------------------------------------------------------
 	//	Constructors
@@ -126,6 +130,7 @@ public class Model {
 		liter = 0;
 		
 		z = null;
+		zOffset = null;
 		nw = null;
 		nd = null;
 		nwsum = null;
@@ -196,7 +201,10 @@ public class Model {
 					new FileInputStream(tassignFile), "UTF-8"));
 			
 			String line;
-			z = new Vector[M];			
+			// topics are appended to z as the docs are read; z grows as needed
+			z = new int[1024];
+			zOffset = new int[M + 1];
+			int [] words = new int[64];
 			data = new LDADataset(M);
 			data.V = V;			
 			for (i = 0; i < M; i++){
@@ -204,9 +212,10 @@ public class Model {
 				StringTokenizer tknr = new StringTokenizer(line, " \t\r\n");
 				
 				int length = tknr.countTokens();
-				
-				Vector<Integer> words = new Vector<Integer>();
-				Vector<Integer> topics = new Vector<Integer>();
+				if (words.length < length)
+					words = new int[Math.max(length, 2 * words.length)];
+				if (z.length < zOffset[i] + length)
+					z = Arrays.copyOf(z, Math.max(zOffset[i] + length, 2 * z.length));
 				
 				for (j = 0; j < length; j++){
 					String token = tknr.nextToken();
@@ -217,21 +226,17 @@ public class Model {
 						return false;
 					}
 					
-					words.add(Integer.parseInt(tknr2.nextToken()));
-					topics.add(Integer.parseInt(tknr2.nextToken()));
+					words[j] = Integer.parseInt(tknr2.nextToken());
+					z[zOffset[i] + j] = Integer.parseInt(tknr2.nextToken());
 				}//end for each topic assignment
+				zOffset[i + 1] = zOffset[i] + length;
 				
 				//allocate and add new document to the corpus
-				Document doc = new Document(words);
+				Document doc = new Document(length, words);
 				data.setDoc(doc, i);
 				
-				//assign values for z
-				z[i] = new Vector<Integer>();
-				for (j = 0; j < topics.size(); j++){
-					z[i].add(topics.get(j));
-				}
-				
 			}//end for each doc
+			z = Arrays.copyOf(z, zOffset[M]);
 			
 			reader.close();
 		}
@@ -275,7 +280,7 @@ public class Model {
 			//write docs with topic assignments for words
 			for (i = 0; i < data.M; i++){
 				for (j = 0; j < data.docs[i].length; ++j){
-					writer.write(data.docs[i].words[j] + ":" + z[i].get(j) + " ");					
+					writer.write(data.docs[i].words[j] + ":" + z[zOffset[i] + j] + " ");					
 				}
 				writer.write("\n");
 			}
@@ -460,6 +465,8 @@ public class Model {
 		twords = option.twords;
 		wordMapFile = option.wordMapFileName;
 		
+		random = option.seed >= 0 ? new SplittableRandom(option.seed) : new SplittableRandom();
+		
 		return true;
 	}
 	
@@ -513,15 +520,14 @@ public class Model {
 			ndsum[m] = 0;
 		}
 		
-		z = new Vector[M];
+		allocZ();
 		for (m = 0; m < data.M; m++){
 			int N = data.docs[m].length;
-			z[m] = new Vector<Integer>();
 			
 			//initilize for z
 			for (n = 0; n < N; n++){
-				int topic = (int)Math.floor(Math.random() * K);
-				z[m].add(topic);
+				int topic = random.nextInt(K);
+				z[zOffset[m] + n] = topic;
 				
 				// number of instances of word assigned to topic j
 				nw[data.docs[m].words[n]][topic] += 1;
@@ -595,15 +601,14 @@ public class Model {
 			ndsum[m] = 0;
 		}
 		
-		z = new Vector[M];
+		allocZ();
 		for (m = 0; m < data.M; m++){
 			int N = data.docs[m].length;
-			z[m] = new Vector<Integer>();
 			
 			//initilize for z
 			for (n = 0; n < N; n++){
-				int topic = (int)Math.floor(Math.random() * K);
-				z[m].add(topic);
+				int topic = random.nextInt(K);
+				z[zOffset[m] + n] = topic;
 				
 				// number of instances of word assigned to topic j
 				nw[data.docs[m].words[n]][topic] += 1;
@@ -622,6 +627,47 @@ public class Model {
 		return true;
 	}
 	
+	/**
+	 * Allocate z for the words of the docs of data and compute zOffset
+	 */
+	protected void allocZ(){
+		zOffset = new int[data.M + 1];
+		for (int m = 0; m < data.M; m++){
+			zOffset[m + 1] = zOffset[m] + data.docs[m].length;
+		}
+		z = new int[zOffset[data.M]];
+	}
+	
+	/**
+	 * Model of a worker thread of parallel estimation: shares the dataset,
+	 * z, nd and ndsum with this model (each worker samples its own docs);
+	 * nw and nwsum are copies of those of this model
+	 */
+	protected Model copyForWorker(){
+		Model worker = new Model();
+		worker.data = data;
+		worker.M = M;
+		worker.V = V;
+		worker.K = K;
+		worker.alpha = alpha;
+		worker.beta = beta;
+		worker.niters = niters;
+		worker.liter = liter;
+		
+		worker.z = z;
+		worker.zOffset = zOffset;
+		worker.nd = nd;
+		worker.ndsum = ndsum;
+		worker.nw = new int[V][];
+		for (int w = 0; w < V; w++){
+			worker.nw[w] = nw[w].clone();
+		}
+		worker.nwsum = nwsum.clone();
+		worker.p = new double[K];
+		worker.random = random.split();
+		return worker;
+	}
+	
 	/**
 	 * Init parameters for inference
 	 * reading new dataset from file
@@ -692,7 +738,7 @@ public class Model {
 	    	// assign values for nw, nd, nwsum, and ndsum
 	    	for (n = 0; n < N; n++){
 	    		w = data.docs[m].words[n];
-	    		int topic = (Integer)z[m].get(n);
+	    		int topic = z[zOffset[m] + n];
 	    		
 	    		// number of instances of word i assigned to topic j
 	    		nw[w][topic] += 1;
@@ -0,0 +1,18 @@
+package in.student.project.jgibblda;
+
+/**
+ * Gibbs sampler that samples the topics of a document at a time;
+ * an alternative to sampling each word with the dense conditional
+ */
+public interface Sampler {
+	/**
+	 * Samples topics of all the words of document m; sets them in z
+	 */
+	public void sample(int m);
+	
+	/**
+	 * Updates what the sampler keeps of the counts of the model after they
+	 * were changed outside it (merged after a parallel iteration)
+	 */
+	public void refresh();
+}
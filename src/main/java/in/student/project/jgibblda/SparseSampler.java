@@ -0,0 +1,294 @@
+package in.student.project.jgibblda;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * SparseLDA Gibbs sampler (Yao, Mimno and McCallum: Efficient methods for
+ * topic model inference on streaming document collections, 2009).
+ * <p>
+ * The conditional of topic k for word w of document m, without the factor
+ * that is the same for all topics, is split into three buckets:
+ * <pre>
+ * (nw[w][k] + beta)(nd[m][k] + alpha) / (nwsum[k] + V * beta)
+ *   = alpha * beta / (nwsum[k] + V * beta)                     s: smoothing, all the topics
+ *   + nd[m][k] * beta / (nwsum[k] + V * beta)                  r: topics of the document
+ *   + (nd[m][k] + alpha) * nw[w][k] / (nwsum[k] + V * beta)    q: topics of the word
+ * </pre>
+ * s and r are kept up to date as the counts change; q is summed over the
+ * topics the word is assigned to only. Most of the mass is in q, so a word
+ * costs about the number of topics of the word and of the document
+ * instead of K. The samples follow the distribution of the dense sampler,
+ * but are not the same samples.
+ * <p>
+ * In inference the counts of the trained model are added to those of the
+ * new model; q is summed over the topics of the word in both of them.
+ */
+public class SparseSampler implements Sampler {
+	private final Model model;
+	private final SplittableRandom random; //of the model
+	private final int K;
+	private final double alpha, beta, Vbeta;
+
+	// counts of the trained model in inference; null in estimation
+	private final int [][] trnNw;
+	private final int [] trnNwsum;
+	private final int [] globalWord; //global id of local word, in inference
+	private final int [][] trnWordTopics; //topics of local word in the trained model, in inference
+
+	private final int [][] wordTopics; //wordTopics[w]: topics with nw[w][k] > 0, first wordTopicCount[w]
+	private final int [] wordTopicCount;
+	private final int [] docTopics; //topics with nd[m][k] > 0 of the current document
+	private int docTopicCount;
+
+	private final double [] denomInv; //1 / (nwsum[k] + V * beta)
+	private final double [] coef; //(nd[m][k] + alpha) / (nwsum[k] + V * beta) of the current document
+	private double s, r;
+	private final double [] q; //terms of q bucket of the current word
+
+	/**
+	 * Sampler for estimation
+	 */
+	public SparseSampler(Model model){
+		this(model, null);
+	}
+
+	/**
+	 * Sampler for inference of new model with the trained model; estimation if trnModel is null
+	 */
+	public SparseSampler(Model model, Model trnModel){
+		this.model = model;
+		random = model.random;
+		K = model.K;
+		alpha = model.alpha;
+		beta = model.beta;
+		Vbeta = (trnModel != null ? trnModel.V : model.V) * beta;
+
+		if (trnModel != null){
+			trnNw = trnModel.nw;
+			trnNwsum = trnModel.nwsum;
+			// only the words of the new docs; a query has a few of the trained ones
+			globalWord = new int[model.V];
+			trnWordTopics = new int[model.V][];
+			for (int w = 0; w < model.V; w++){
+				globalWord[w] = model.data.lid2gid.get(w);
+				trnWordTopics[w] = topicsOf(trnNw[globalWord[w]], 0);
+			}
+		}
+		else {
+			trnNw = null;
+			trnNwsum = null;
+			globalWord = null;
+			trnWordTopics = null;
+		}
+
+		wordTopics = new int[model.V][];
+		wordTopicCount = new int[model.V];
+		for (int w = 0; w < model.V; w++){
+			wordTopics[w] = topicsOf(model.nw[w], 4);
+			wordTopicCount[w] = count(model.nw[w]);
+		}
+		docTopics = new int[K];
+
+		denomInv = new double[K];
+		coef = new double[K];
+		for (int k = 0; k < K; k++){
+			updateDenom(k);
+			coef[k] = alpha * denomInv[k];
+		}
+		q = new double[2 * K];
+	}
+
+	/**
+	 * Samples topics of all the words of document m; sets them in z
+	 */
+	public void sample(int m){
+		int [] nd = model.nd[m];
+
+		// s is recomputed for each document, so rounding errors do not add up
+		s = 0;
+		for (int k = 0; k < K; k++){
+			s += alpha * beta * denomInv[k];
+		}
+		r = 0;
+		docTopicCount = 0;
+		for (int k = 0; k < K; k++){
+			if (nd[k] > 0){
+				docTopics[docTopicCount++] = k;
+				r += nd[k] * beta * denomInv[k];
+				coef[k] = (nd[k] + alpha) * denomInv[k];
+			}
+		}
+
+		Document doc = model.data.docs[m];
+		int offset = model.zOffset[m];
+		for (int n = 0; n < doc.length; n++){
+			model.z[offset + n] = sample(m, doc.words[n], model.z[offset + n]);
+		}
+
+		// coefficients without the document
+		for (int i = 0; i < docTopicCount; i++){
+			int k = docTopics[i];
+			coef[k] = alpha * denomInv[k];
+		}
+	}
+
+	private int sample(int m, int w, int topic){
+		// remove z_i from the count variables
+		update(m, w, topic, -1);
+
+		// topic-word bucket: topics of the word in the model, then in the trained model
+		double qsum = 0;
+		int [] topics = wordTopics[w];
+		int count = wordTopicCount[w];
+		for (int i = 0; i < count; i++){
+			int k = topics[i];
+			q[i] = coef[k] * model.nw[w][k];
+			qsum += q[i];
+		}
+		int [] trnTopics = null;
+		if (trnNw != null){
+			int gw = globalWord[w];
+			trnTopics = trnWordTopics[w];
+			for (int i = 0; i < trnTopics.length; i++){
+				int k = trnTopics[i];
+				q[count + i] = coef[k] * trnNw[gw][k];
+				qsum += q[count + i];
+			}
+		}
+
+		double u = random.nextDouble() * (s + r + qsum);
+
+		if (u < qsum){
+			int total = count + (trnTopics != null ? trnTopics.length : 0);
+			int i = 0;
+			for (; i < total - 1; i++){
+				u -= q[i];
+				if (u < 0)
+					break;
+			}
+			topic = i < count ? topics[i] : trnTopics[i - count];
+		}
+		else if ((u -= qsum) < r && docTopicCount > 0){
+			int [] nd = model.nd[m];
+			int i = 0;
+			for (; i < docTopicCount - 1; i++){
+				int k = docTopics[i];
+				u -= nd[k] * beta * denomInv[k];
+				if (u < 0)
+					break;
+			}
+			topic = docTopics[i];
+		}
+		else {
+			u -= r;
+			for (topic = 0; topic < K - 1; topic++){
+				u -= alpha * beta * denomInv[topic];
+				if (u < 0)
+					break;
+			}
+		}
+
+		// add newly estimated z_i to count variables
+		update(m, w, topic, 1);
+		return topic;
+	}
+
+	/**
+	 * Adds delta to the counts of the topic; updates the buckets and the topics of the word and the document
+	 */
+	private void update(int m, int w, int topic, int delta){
+		int [] nd = model.nd[m];
+		s -= alpha * beta * denomInv[topic];
+		r -= nd[topic] * beta * denomInv[topic];
+
+		model.nw[w][topic] += delta;
+		nd[topic] += delta;
+		model.nwsum[topic] += delta;
+		model.ndsum[m] += delta;
+
+		updateDenom(topic);
+		s += alpha * beta * denomInv[topic];
+		r += nd[topic] * beta * denomInv[topic];
+		coef[topic] = (nd[topic] + alpha) * denomInv[topic];
+
+		if (delta < 0){
+			if (model.nw[w][topic] == 0)
+				wordTopicCount[w] = remove(wordTopics[w], wordTopicCount[w], topic);
+			if (nd[topic] == 0)
+				docTopicCount = remove(docTopics, docTopicCount, topic);
+		}
+		else {
+			if (model.nw[w][topic] == 1){
+				if (wordTopicCount[w] == wordTopics[w].length)
+					wordTopics[w] = Arrays.copyOf(wordTopics[w], Math.min(K, 2 * wordTopics[w].length));
+				wordTopics[w][wordTopicCount[w]++] = topic;
+			}
+			if (nd[topic] == 1)
+				docTopics[docTopicCount++] = topic;
+		}
+	}
+
+	/**
+	 * Rebuilds the topics of the words and the denominators from the counts
+	 * of the model; the lists are reused. In estimation only
+	 */
+	public void refresh(){
+		for (int w = 0; w < model.V; w++){
+			int [] nw = model.nw[w];
+			int count = 0;
+			for (int k = 0; k < K; k++){
+				if (nw[k] > 0){
+					if (count == wordTopics[w].length)
+						wordTopics[w] = Arrays.copyOf(wordTopics[w], Math.min(K, 2 * wordTopics[w].length));
+					wordTopics[w][count++] = k;
+				}
+			}
+			wordTopicCount[w] = count;
+		}
+		for (int k = 0; k < K; k++){
+			updateDenom(k);
+			coef[k] = alpha * denomInv[k];
+		}
+	}
+
+	private void updateDenom(int k){
+		denomInv[k] = 1.0 / (model.nwsum[k] + (trnNwsum != null ? trnNwsum[k] : 0) + Vbeta);
+	}
+
+	/**
+	 * Removes the topic from the first count topics
+	 * @return new count
+	 */
+	private static int remove(int [] topics, int count, int topic){
+		for (int i = 0; i < count; i++){
+			if (topics[i] == topic){
+				topics[i] = topics[count - 1];
+				return count - 1;
+			}
+		}
+		return count;
+	}
+
+	private static int count(int [] counts){
+		int count = 0;
+		for (int k = 0; k < counts.length; k++){
+			if (counts[k] > 0)
+				count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @return topics with positive counts; array of at least minLength
+	 */
+	private static int [] topicsOf(int [] counts, int minLength){
+		int [] topics = new int[Math.min(counts.length, Math.max(minLength, count(counts)))];
+		int i = 0;
+		for (int k = 0; k < counts.length; k++){
+			if (counts[k] > 0)
+				topics[i++] = k;
+		}
+		return topics;
+	}
+}
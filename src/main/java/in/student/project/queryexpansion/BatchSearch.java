@@ -6,25 +6,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.zip.GZIPInputStream;
-
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.ScoreDoc;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.similarities.*;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Version;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 
@@ -34,7 +23,7 @@ public class BatchSearch {
 	
 	public static void main(String[] args) throws Exception {
 		String usage =
-				"Usage:\tjava BatchSearch [-file topic_filename] [-qe method] [-field f] [-queries file] [-outfile filename]";
+				"Usage:\tjava BatchSearch [-file topic_filename] [-qe method] [-field f] [-queries file] [-outfile filename] [-threads n]";
 		if (args.length > 0 && ("-h".equals(args[0]) || "-help".equals(args[0]))) {
 			System.out.println(usage);
 			System.exit(0);
@@ -45,6 +34,7 @@ public class BatchSearch {
 		String queries = null;
 		String queryexpansion = "rocchio";
 		String outFileName = "outTitle.txt";
+		int threads = 1;
 
 		for(int i = 0;i < args.length;i++) {
 			if ("-file".equals(args[i])) {
@@ -62,35 +52,99 @@ public class BatchSearch {
 			} else if ("-outfile".equals(args[i])) {
 				outFileName = args[i+1];
 				i++;
+			} else if ("-threads".equals(args[i])) {
+				threads = Integer.parseInt(args[i+1]);
+				i++;
 			}
 		}
 
 
 
-        BufferedReader reader = null;
+		String method = null;
+		if (queryexpansion.equalsIgnoreCase("rocchio")) {
+			method = QueryExpansion.ROCCHIO_METHOD;
+		} else if (queryexpansion.equalsIgnoreCase("lda")) {
+			method = QueryExpansion.LDA_METHOD;
+		}
+
+		// Parse all the topics first; titles are kept at their line
+		ArrayList<String> lines = new ArrayList<String>();
+		ArrayList<Integer> titleLines = new ArrayList<Integer>();
+		readTopics(file, lines, titleLines);
+
+        final SearchSession session = new SearchSession("search.prop");
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         BufferedWriter writer = null;
-		GZIPInputStream in =null;
-		InputStream in2 = null;
-		Boolean gettingTitleFlag = false;
-		
-		try {
-			in2 = new FileInputStream(file);
-            reader = new BufferedReader(new InputStreamReader(in2));
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
 		
 		try {
+			// query expansion here; the titles are expanded and searched by the pool,
+			// at most window of them ahead of the one being written, so a slow query
+			// holds back a bounded number of finished results
+			int window = 2 * threads;
+			ArrayDeque<Future<SearchSession.Result>> results = new ArrayDeque<Future<SearchSession.Result>>();
+			int submitted = 0;
+			if (method != null) {
+				for (; submitted < Math.min(window, titleLines.size()); submitted++) {
+					results.add(submit(executor, session, lines.get(titleLines.get(submitted)), method));
+				}
+			}
+			
 	        writer = new BufferedWriter( new FileWriter( new File( outFileName ) ) );
 
+			// write results in the original topic order
+			int t = 0;
+			for (int i = 0; i < lines.size(); i++) {
+				String line = lines.get(i);
+				if (t < titleLines.size() && titleLines.get(t) == i) {
+					String title = line;
+					if (method != null) {
+						Future<SearchSession.Result> result = results.poll();
+						if (submitted < titleLines.size()) {
+							results.add(submit(executor, session, lines.get(titleLines.get(submitted)), method));
+							submitted++;
+						}
+						String expandedQuery = session.write(getResult(result));
+			    		if (expandedQuery.length() > 0)
+			    			title = expandedQuery;
+					}
+					t++;
+		    		
+		    		writer.write("<title> " + title);
+					writer.write("\n");
+					System.out.println(title);
+					continue;
+				}
+				writer.write(line);
+				writer.write("\n");
+			}
+		} finally {
+			executor.shutdownNow();
+			if (writer != null) {
+		        writer.flush();
+		        writer.close();
+			}
+	        session.close();
+		}
+        
+	}
+	
+	/**
+	 * Reads the topic file; a title is stored trimmed at the index of its 
+	 * <code>&lt;title&gt;</code> line, or of the next line when the title 
+	 * is located below the tag (the tag line itself is dropped)
+	 * 
+	 * @param lines - lines of the file
+	 * @param titleLines - indexes of the lines that are titles
+	 */
+	private static void readTopics(String file, ArrayList<String> lines, ArrayList<Integer> titleLines) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file)));
+		boolean gettingTitleFlag = false;
+		
+		try {
 			String line = null;
-			String sep = null;
-			String newline = System.getProperty("line.separator");
-
-			StringBuffer sb = null;
-			String title = "";
 			while (null != (line = reader.readLine())) {
 				if (line.startsWith("<title>") || gettingTitleFlag) {
+					String title;
 					if (gettingTitleFlag) { // when the title located in below line.
 						title = line.trim();
 						gettingTitleFlag = false;
@@ -102,37 +156,33 @@ public class BatchSearch {
 			    			continue;
 			    		}
 					}
-			    		
-		    		// query expansion here
-		    		String[] args_file = {"search.prop", title};
-		    		
-		    		if (queryexpansion.equalsIgnoreCase("rocchio")) {
-			    		SearchFilesRocchio.main ( args_file );
-			    		if (SearchFilesRocchio.expandedQuery.length() > 0)
-			    			title = SearchFilesRocchio.expandedQuery; 
-		    		} else if (queryexpansion.equalsIgnoreCase("lda")) {
-			    		SearchFilesLDA.main ( args_file );
-			    		if (SearchFilesLDA.expandedQuery.length() > 0)
-			    			title = SearchFilesLDA.expandedQuery; 
-		    		}
-		    		
-		    		writer.write("<title> " + title);
-					writer.write("\n");
-					System.out.println(title);
+					titleLines.add(lines.size());
+					lines.add(title);
 					continue;
 				}
-				writer.write(line);
-				writer.write("\n");
+				lines.add(line);
 			}
 		} finally {
 			reader.close();
-			if ( in2 != null)
-				in2.close();
-
-	        writer.flush();
-	        writer.close();
-	        
 		}
-        
+	}
+	
+	private static Future<SearchSession.Result> submit(ExecutorService executor, final SearchSession session, 
+			final String title, final String method) {
+		return executor.submit(new Callable<SearchSession.Result>() {
+			public SearchSession.Result call() throws Exception {
+				return session.execute(title, method);
+			}
+		});
+	}
+	
+	private static SearchSession.Result getResult(Future<SearchSession.Result> result) throws Exception {
+		try {
+			return result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			throw e;
+		}
 	}
 }
@@ -0,0 +1,114 @@
+package in.student.project.queryexpansion;
+
+import java.util.Vector;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Result of one query expansion: the expanded query, its weighted terms
+ * and how long the expansion took.
+ * <p>
+ * The result is immutable: the query and the terms are copied in once and
+ * the terms are copied out. The query is shared with every caller and is
+ * read-only: it can be searched concurrently but must not be modified.
+ * Every expansion creates its own result, so one <code>QueryExpansion</code>
+ * can serve many threads at once.
+ */
+public class ExpansionResult
+{
+    private final Query query;
+    private final TermQuery[] terms;
+    private final long feedbackNanos;
+    private final long expansionNanos;
+
+    /**
+     * @param query - expanded query
+     * @param terms - expanded terms; boost is the weight of the term
+     * @param feedbackNanos - time spent getting terms of the feedback documents
+     * @param expansionNanos - time spent weighting terms and creating the query
+     */
+    ExpansionResult( Query query, Vector<TermQuery> terms, long feedbackNanos, long expansionNanos )
+    {
+        this.query = copy( query );
+        this.terms = new TermQuery[terms.size()];
+        for ( int i = 0; i < this.terms.length; i++ )
+        {
+            // copy, so boosts cannot be changed through the caller's term queries
+            TermQuery term = terms.elementAt( i );
+            this.terms[i] = new TermQuery( term.getTerm() );
+            this.terms[i].setBoost( term.getBoost() );
+        }
+        this.feedbackNanos = feedbackNanos;
+        this.expansionNanos = expansionNanos;
+    }
+
+    /**
+     * @return expanded query, which must not be modified; null if it could not be created
+     */
+    public Query getQuery()
+    {
+        return query;
+    }
+
+    /**
+     * Deep copy of the query: clauses of boolean queries are copied, other
+     * queries are cloned (<code>Query.clone()</code> of a <code>BooleanQuery</code>
+     * shares its clauses)
+     */
+    private static Query copy( Query query )
+    {
+        if ( query instanceof BooleanQuery )
+        {
+            BooleanQuery booleanQuery = (BooleanQuery) query;
+            BooleanQuery copy = new BooleanQuery( booleanQuery.isCoordDisabled() );
+            copy.setBoost( booleanQuery.getBoost() );
+            copy.setMinimumNumberShouldMatch( booleanQuery.getMinimumNumberShouldMatch() );
+            for ( BooleanClause clause : booleanQuery.clauses() )
+            {
+                copy.add( copy( clause.getQuery() ), clause.getOccur() );
+            }
+            return copy;
+        }
+        return query == null ? null : query.clone();
+    }
+
+    /**
+     * Returns <code> QueryExpansion.TERM_NUM_FLD </code> expanded terms
+     * sorted by weight; the returned vector and its terms are copies
+     */
+    public Vector<TermQuery> getTerms()
+    {
+        Vector<TermQuery> copy = new Vector<TermQuery>( terms.length );
+        for ( int i = 0; i < terms.length; i++ )
+        {
+            TermQuery term = new TermQuery( terms[i].getTerm() );
+            term.setBoost( terms[i].getBoost() );
+            copy.add( term );
+        }
+        return copy;
+    }
+
+    public long getFeedbackNanos()
+    {
+        return feedbackNanos;
+    }
+
+    public long getExpansionNanos()
+    {
+        return expansionNanos;
+    }
+
+    public long getTotalNanos()
+    {
+        return feedbackNanos + expansionNanos;
+    }
+
+    public String toString()
+    {
+        return "ExpansionResult[terms=" + terms.length + ", feedback=" + ( feedbackNanos / 1000000 )
+            + "ms, expansion=" + ( expansionNanos / 1000000 ) + "ms]";
+    }
+}
@@ -12,7 +12,7 @@ import java.util.*;
 
 import org.apache.lucene.search.*;
 
-public class QueryBoostComparator implements Comparator
+public class QueryBoostComparator implements Comparator<Query>
 {
     
     /** Creates a new instance of QueryBoostComparator */
@@ -24,17 +24,9 @@ public class QueryBoostComparator implements Comparator
      * Compares queries based on their boost
      * Since want to be sorted in decending order; comparison will be reversed
      */
-    public int compare(Object obj1, Object obj2)
+    public int compare(Query q1, Query q2)
     {
-        Query q1 = (Query) obj1;
-        Query q2 = (Query) obj2;
-        
-        if ( q1.getBoost() > q2.getBoost() )
-            return -1;
-        else if ( q1.getBoost() < q2.getBoost() ) 
-        	return 1;
-        else
-        	return 0;
+        return Float.compare( q2.getBoost(), q1.getBoost() );
     }
     
 }
@@ -7,6 +7,8 @@ import java.util.regex.PatternSyntaxException;
 
 import org.apache.lucene.analysis.*;
 import in.student.project.util.Defs;
+import in.student.project.util.FeedbackTerms;
+import in.student.project.util.TermStatsCache;
 import in.student.project.jgibblda.LDAInferencer;
 import in.student.project.jgibblda.Topic;
 import org.apache.lucene.document.*;
@@ -46,6 +48,7 @@ public class QueryExpansion
      */
     public static final String METHOD_FLD = "QE.method";
     public static final String ROCCHIO_METHOD = "rocchio";    
+    public static final String LDA_METHOD = "lda";
     /**
      * how much importance of document decays as doc rank gets higher.  decay = decay * rank
      * 0 - no decay
@@ -59,6 +62,35 @@ public class QueryExpansion
      * Number of terms to produce 
      */
     public static final String TERM_NUM_FLD = "QE.term.num";
+    /**
+     * Indicates FLD which idf is used to weight terms {doc, collection}
+     */
+    public static final String IDF_FLD = "QE.idf";
+    /**
+     * idf( tf, number of terms of the doc ); original weighting
+     */
+    public static final String IDF_DOC = "doc";
+    /**
+     * idf( docFreq, numDocs ) of the index; looked up through <code>TermStatsCache</code>
+     */
+    public static final String IDF_COLLECTION = "collection";
+    /**
+     * Maximum number of clauses of the expanded query; 
+     * at most (and by default) <code>BooleanQuery.getMaxClauseCount()</code>
+     */
+    public static final String MAX_CLAUSES_FLD = "QE.max.clauses";
+    /**
+     * Indicates FLD how expanded query is created {boolean, parser}
+     */
+    public static final String QUERY_BUILDER_FLD = "QE.query.builder";
+    /**
+     * build BooleanQuery of TermQueries directly
+     */
+    public static final String QUERY_BUILDER_BOOLEAN = "boolean";
+    /**
+     * serialize terms with boosts and parse them with QueryParser (compatibility)
+     */
+    public static final String QUERY_BUILDER_PARSER = "parser";
     
     
 
@@ -75,6 +107,24 @@ public class QueryExpansion
      */
     public static final String DOC_SOURCE_GOOGLE = "google";
     
+    /**
+     * Indicates FLD how terms of the documents are obtained {text, termvector}
+     */
+    public static final String DOC_TERMS_FLD = "QE.doc.terms";
+    /**
+     * split stored text of the documents
+     */
+    public static final String DOC_TERMS_TEXT = "text";
+    /**
+     * read stored term vectors of the documents; documents are not loaded
+     */
+    public static final String DOC_TERMS_TERMVECTOR = "termvector";
+    /**
+     * read the top terms of the documents precomputed at index time; one doc values 
+     * lookup per document; documents indexed without them fall back to termvector
+     */
+    public static final String DOC_TERMS_PRECOMPUTED = "precomputed";
+    
     /**
      * Rocchio Params
      */    
@@ -89,22 +139,34 @@ public class QueryExpansion
     private Analyzer analyzer;
     private IndexSearcher searcher;
     private TFIDFSimilarity similarity;
-    private Vector<TermQuery> expandedTerms;    
+    private TermStatsCache termStats;
     private static Logger logger = Logger.getLogger( "QueryExpansion" );
 
     /**
-     * Creates a new instance of QueryExpansion
+     * Creates a new instance of QueryExpansion. The instance keeps no state
+     * between expansions, so it may be shared by several threads;
+     * it caches collection statistics of the searcher in its own cache.
      *
      * @param similarity
      * @param analyzer - used to parse documents to extract terms
      * @param searcher - used to obtain idf
      */
     public QueryExpansion( Analyzer analyzer, IndexSearcher searcher, TFIDFSimilarity similarity, Properties prop )
+    {
+        this( analyzer, searcher, similarity, prop, new TermStatsCache( TermStatsCache.DEFAULT_MAX_SIZE ) );
+    }
+    
+    /**
+     * @param termStats - cache of the collection statistics of the searcher
+     */
+    public QueryExpansion( Analyzer analyzer, IndexSearcher searcher, TFIDFSimilarity similarity, Properties prop, 
+                           TermStatsCache termStats )
     {
         this.analyzer = analyzer;
         this.searcher = searcher;
         this.similarity = similarity;
         this.prop = prop;
+        this.termStats = termStats;
     }
     
     
@@ -121,18 +183,52 @@ public class QueryExpansion
      * @param prop - properties that contain necessary values to perform query; 
      *               see constants for field names and values
      * 
-     * @return expandedQuery
+     * @return expanded query with its terms
      * 
      * @throws IOException
      * @throws ParseException
      */
-    public Query expandQuery( String queryStr, TopDocs hits, Properties prop )
+    public ExpansionResult expandQuery( String queryStr, TopDocs hits, Properties prop )
     throws IOException
     {
-        // Get Docs to be used in query expansion
-        Vector<Document> vHits = getDocs( queryStr, hits, prop );
+        // Get terms of the docs to be used in query expansion
+        long start = System.nanoTime();
+        Vector<QueryTermVector> docsTermVector = getFeedbackTerms( queryStr, hits, prop );
+        long feedbackNanos = System.nanoTime() - start;
                 
-        return expandQuery( queryStr, vHits, prop );
+        return expandQueryTerms( queryStr, docsTermVector, prop, feedbackNanos );
+    }
+    
+    
+    /**
+     * Gets terms of the documents that will be used in query expansion.
+     * With <code>QueryExpansion.DOC_TERMS_TERMVECTOR</code> the terms are read from
+     * stored term vectors of the hits; with <code>QueryExpansion.DOC_TERMS_PRECOMPUTED</code>
+     * their top terms are read from doc values; otherwise the documents are loaded
+     * and their stored text is split into terms
+     * 
+     * @param query - for which expansion is being performed
+     * @param hits - from the original query
+     * @param prop - uses <code> QueryExpansion.DOC_TERMS_FLD </code> to determine how to get terms
+     * 
+     * @return term vectors of the docs; docs in the order of hits
+     */
+    private Vector<QueryTermVector> getFeedbackTerms( String query, TopDocs hits, Properties prop ) throws IOException
+    {
+        int docNum = Integer.valueOf( prop.getProperty( QueryExpansion.DOC_NUM_FLD ) ).intValue();
+        String docTerms = prop.getProperty( QueryExpansion.DOC_TERMS_FLD, QueryExpansion.DOC_TERMS_TEXT );
+        
+        if ( docTerms.equals( QueryExpansion.DOC_TERMS_TERMVECTOR ) )
+        {
+            return getDocsTermVectors( hits, docNum, prop );
+        }
+        if ( docTerms.equals( QueryExpansion.DOC_TERMS_PRECOMPUTED ) )
+        {
+            return getDocsFeedbackTerms( hits, docNum, prop );
+        }
+        
+        Vector<Document> vHits = getDocs( query, hits, prop );
+        return getDocsTerms( vHits, docNum, analyzer );
     }
     
 
@@ -185,11 +281,31 @@ public class QueryExpansion
      * @param prop - properties that contain necessary values to perform query; 
      *               see constants for field names and values
      * 
-     * @return
+     * @return expanded query with its terms
      * @throws IOException
      * @throws ParseException
      */
-    public Query expandQuery( String queryStr, Vector<Document> hits, Properties prop )
+    public ExpansionResult expandQuery( String queryStr, Vector<Document> hits, Properties prop )
+    throws IOException
+    {
+        int docNum = Integer.valueOf( prop.getProperty( QueryExpansion.DOC_NUM_FLD ) ).intValue();
+        
+        // Create combine documents term vectors - sum ( rel term vectors )
+        long start = System.nanoTime();
+        Vector<QueryTermVector> docsTermVector = getDocsTerms( hits, docNum, analyzer );
+        long feedbackNanos = System.nanoTime() - start;
+        
+        return expandQueryTerms( queryStr, docsTermVector, prop, feedbackNanos );
+    }
+    
+    
+    /**
+     * Performs Rocchio's query expansion using terms of the docs
+     * 
+     * @param feedbackNanos - time spent getting the terms of the docs
+     */
+    private ExpansionResult expandQueryTerms( String queryStr, Vector<QueryTermVector> docsTermVector, Properties prop,
+                                              long feedbackNanos )
     throws IOException
     {
         // Load Necessary Values from Properties
@@ -198,40 +314,42 @@ public class QueryExpansion
         float decay = Float.valueOf( prop.getProperty( QueryExpansion.DECAY_FLD, "0.0" ) ).floatValue();
         int docNum = Integer.valueOf( prop.getProperty( QueryExpansion.DOC_NUM_FLD ) ).intValue();
         int termNum = Integer.valueOf( prop.getProperty( QueryExpansion.TERM_NUM_FLD ) ).intValue();                         
-        
-        // Create combine documents term vectors - sum ( rel term vectors )
-        Vector<QueryTermVector> docsTermVector = getDocsTerms( hits, docNum, analyzer );
                 
         // Adjust term features of the docs with alpha * query; and beta; and assign weights/boost to terms (tf*idf)
-        Query expandedQuery = adjust( docsTermVector, queryStr, alpha, beta, decay, docNum, termNum );
-        
-        return expandedQuery;
+        return adjust( docsTermVector, queryStr, alpha, beta, decay, docNum, termNum, feedbackNanos );
     }
     
-    public Query expandQueryLDA( String queryStr, TopDocs hits, Properties prop )
+    /**
+     * Expands the query with the first topic of the top document inferred by LDA
+     * 
+     * @return expanded query with its terms; terms have no boost
+     */
+    public ExpansionResult expandQueryLDA( String queryStr, TopDocs hits, Properties prop )
     throws IOException
     {
-    	Vector<Document> vHits = getDocs( queryStr, hits, prop );
-        
         // Load Necessary Values from Properties
-        int docNum = Integer.valueOf( prop.getProperty( QueryExpansion.DOC_NUM_FLD ) ).intValue();
         String model_dir = String.valueOf( prop.getProperty( QueryExpansion.LDA_MODEL_DIR ) );
         String model_name = String.valueOf( prop.getProperty( QueryExpansion.LDA_MODEL_NAME ) );
         
         
         // Create combine documents term vectors - sum ( rel term vectors )
-        Vector<QueryTermVector> docsTermVector = getDocsTerms( vHits, docNum, analyzer );
+        long start = System.nanoTime();
+        Vector<QueryTermVector> docsTermVector = getFeedbackTerms( queryStr, hits, prop );
+        long feedbackNanos = System.nanoTime() - start;
+        start = System.nanoTime();
 
-        QueryTermVector docTerms = docsTermVector.elementAt( 0 );
-        String[] termsTxt = docTerms.getTerms();
+        // without feedback terms there is nothing to infer a topic from; keep the original query
+        String targetStr = queryStr;
+        if ( !docsTermVector.isEmpty() )
+        {
+            QueryTermVector docTerms = docsTermVector.elementAt( 0 );
+            String[] termsTxt = docTerms.getTerms();
 
-        Topic [] topics = LDAInferencer.getInstance(model_dir, model_name).extractTopicViaLDA(termsTxt);	
+            Topic [] topics = LDAInferencer.getInstance(model_dir, model_name).extractTopicViaLDA(termsTxt);	
 
-        String targetStr = "";
-        if (topics[0] == null)
-        	targetStr = queryStr;
-        else
-        	targetStr = (queryStr + " " + topics[0]).trim();
+            if (topics[0] != null)
+            	targetStr = (queryStr + " " + topics[0]).trim();
+        }
         Query expandedQuery = null;
         try {
         	expandedQuery = new QueryParser(Version.LUCENE_48, Defs.FLD_TEXT, analyzer ).parse(targetStr);
@@ -239,10 +357,11 @@ public class QueryExpansion
 
         }
         
-        setExpandedTerms( targetStr );
+        Vector<TermQuery> expandedTerms = getTerms( targetStr );
         
         
-        return expandedQuery;
+        return new ExpansionResult( expandedQuery, firstTerms( expandedTerms ), 
+                                    feedbackNanos, System.nanoTime() - start );
     }
     
     
@@ -259,34 +378,36 @@ public class QueryExpansion
      * @param beta - factor of the equation
      * @param docsRelevantCount - number of the top documents to assume to be relevant
      * @param maxExpandedQueryTerms - maximum number of terms in expanded query
+     * @param feedbackNanos - time spent getting <code>docsTermsVector</code>
      *
      * @return expandedQuery with boost factors adjusted using Rocchio's algorithm
      *
      * @throws IOException
      * @throws ParseException
      */
-    public Query adjust( Vector<QueryTermVector> docsTermsVector, String queryStr, 
+    public ExpansionResult adjust( Vector<QueryTermVector> docsTermsVector, String queryStr, 
                          float alpha, float beta, float decay, int docsRelevantCount, 
-                         int maxExpandedQueryTerms )
+                         int maxExpandedQueryTerms, long feedbackNanos )
     throws IOException
     {
+        long start = System.nanoTime();
         Query expandedQuery;
+        TermWeightAccumulator weights = new TermWeightAccumulator();
         
-        // setBoost of docs terms
-        Vector<TermQuery> docsTerms = setBoost( docsTermsVector, beta, decay );
-        logger.finer( docsTerms.toString() );
+        // accumulate weights of docs terms
+        accumulate( docsTermsVector, beta, decay, weights );
+        logger.finer( "docs terms: " + weights.size() );
         
-        // setBoost of query terms
+        // accumulate weights of query terms on top of docs terms,
+        // which combines weights according to expansion formula
         // Get queryTerms from the query
         QueryTermVector queryTermsVector = new QueryTermVector( queryStr, analyzer );        
-        Vector<TermQuery> queryTerms = setBoost( queryTermsVector, alpha );        
-        
-        // combine weights according to expansion formula
-        Vector<TermQuery> expandedQueryTerms = combine( queryTerms, docsTerms );
-        setExpandedTerms( expandedQueryTerms ); 
-        // Sort by boost=weight
-        Comparator comparator = new QueryBoostComparator();
-        Collections.sort( expandedQueryTerms, comparator );
+        Vector<QueryTermVector> queryTermsVectors = new Vector<QueryTermVector>();
+        queryTermsVectors.add( queryTermsVector );
+        accumulate( queryTermsVectors, alpha, 0, weights );
+        
+        // Materialize only the top terms sorted by boost=weight
+        Vector<TermQuery> expandedQueryTerms = weights.getTopTerms( Defs.FLD_TEXT, maxExpandedQueryTerms );
 
         // Create Expanded Query
         expandedQuery = null;
@@ -297,29 +418,89 @@ public class QueryExpansion
 			e.printStackTrace();
 		}
         
-        return expandedQuery;
+        return new ExpansionResult( expandedQuery, firstTerms( expandedQueryTerms ), 
+                                    feedbackNanos, System.nanoTime() - start );
     }
 	
 	    
     
     /**
      * Merges <code>termQueries</code> into a single query.
-     * In the future this method should probably be in <code>Query</code> class.
-     * This is akward way of doing it; but only merge queries method that is
-     * available is mergeBooleanQueries; so actually have to make a string
-     * term1^boost1, term2^boost and then parse it into a query
+     * By default the query is built directly as a <code>BooleanQuery</code> of
+     * the term queries; with <code>QueryExpansion.QUERY_BUILDER_PARSER</code>
+     * the terms are serialized as term1^boost1, term2^boost and parsed back.
+     * Number of terms is limited by <code>QueryExpansion.MAX_CLAUSES_FLD</code>
+     * and <code>BooleanQuery.getMaxClauseCount()</code>, which is not changed
      *     
-     * @param termQueries - to merge
+     * @param termQueries - to merge; sorted by boost in descending order
      *
      * @return query created from termQueries including boost parameters
      * @throws QueryNodeException 
      */    
     public Query mergeQueries( Vector<TermQuery> termQueries, int maxTerms ) throws QueryNodeException
     {
-        Query query = null;
+        // Select only the maxTerms number of terms; heaviest terms come first
+        // the global clause limit is shared by concurrent expansions, so it is only read
+        int maxClauses = Math.min( BooleanQuery.getMaxClauseCount(), 
+                Integer.valueOf( prop.getProperty( QueryExpansion.MAX_CLAUSES_FLD, 
+                        String.valueOf( BooleanQuery.getMaxClauseCount() ) ) ).intValue() );
+        int termCount = Math.min( termQueries.size(), Math.min( maxTerms, maxClauses ) );
+        if ( termCount < Math.min( termQueries.size(), maxTerms ) )
+        {
+            logger.fine( "expanded query truncated to " + termCount + " clauses" );
+        }
+        
+        String builder = prop.getProperty( QueryExpansion.QUERY_BUILDER_FLD, QueryExpansion.QUERY_BUILDER_BOOLEAN );
+        if ( builder.equals( QueryExpansion.QUERY_BUILDER_PARSER ) )
+        {
+            return parseQueries( termQueries, termCount );
+        }
         
-        // Select only the maxTerms number of terms
-        int termCount = Math.min( termQueries.size(), maxTerms );
+        return buildQuery( termQueries, termCount );
+    }
+    
+    
+    /**
+     * Creates <code>BooleanQuery</code> of the first <code>termCount</code> 
+     * term queries; each one is an optional clause keeping its boost.
+     * Terms are not analyzed, only lower cased
+     *
+     * @param termQueries - to merge
+     * @param termCount - number of term queries to use
+     */
+    private Query buildQuery( Vector<TermQuery> termQueries, int termCount )
+    {
+        BooleanQuery query = new BooleanQuery();
+        for ( int i = 0; i < termCount; i++ )
+        {
+            TermQuery termQuery = termQueries.elementAt(i); 
+            String text = termQuery.getTerm().text();
+            String lowerText = text.toLowerCase();
+            if ( !lowerText.equals( text ) )
+            {
+                float boost = termQuery.getBoost();
+                termQuery = new TermQuery( new Term( Defs.FLD_TEXT, lowerText ) );
+                termQuery.setBoost( boost );
+            }
+            query.add( termQuery, BooleanClause.Occur.SHOULD );
+            logger.finest( termQuery.getTerm() + " : " + termQuery.getBoost() );
+        }
+        logger.fine( query.toString() );
+        
+        return query;
+    }
+    
+    
+    /**
+     * Compatibility way of merging: makes a string term1^boost1, term2^boost 
+     * of the first <code>termCount</code> term queries and then parses it into a query
+     *
+     * @param termQueries - to merge
+     * @param termCount - number of term queries to use
+     */
+    private Query parseQueries( Vector<TermQuery> termQueries, int termCount )
+    {
+        Query query = null;
         
         // Create Query String
         StringBuffer qBuf = new StringBuffer();
@@ -381,6 +562,105 @@ public class QueryExpansion
     }
     
 
+    /**
+     * Reads terms of the hits from their stored term vectors; 
+     * neither stored fields are loaded nor text is analyzed
+     *
+     * @param hits - from the original query
+     * @param docsRelevantCount - number of the top documents to assume to be relevant
+     * @param prop - uses <code> QueryExpansion.DOC_SOURCE_FLD </code> to determine where to get docs
+     *
+     * @return docsTerms docs must be in order
+     */
+    public Vector<QueryTermVector> getDocsTermVectors( TopDocs hits, int docsRelevantCount, Properties prop )
+    throws IOException
+    {
+        return getHitsTerms( hits, docsRelevantCount, prop, false );
+    }
+    
+
+    /**
+     * Reads the top terms of the hits precomputed at index time 
+     * (<code>Defs.FLD_FEEDBACK_TERMS</code>); hits indexed without them 
+     * are read from their term vectors
+     *
+     * @param hits - from the original query
+     * @param docsRelevantCount - number of the top documents to assume to be relevant
+     * @param prop - uses <code> QueryExpansion.DOC_SOURCE_FLD </code> to determine where to get docs
+     *
+     * @return docsTerms docs must be in order
+     */
+    public Vector<QueryTermVector> getDocsFeedbackTerms( TopDocs hits, int docsRelevantCount, Properties prop )
+    throws IOException
+    {
+        return getHitsTerms( hits, docsRelevantCount, prop, true );
+    }
+    
+    
+    /**
+     * Reads terms of the top hits without loading their stored fields;
+     * hits that have no terms are left out
+     *
+     * @param precomputed - whether to prefer terms precomputed at index time to term vectors
+     *
+     * @return docsTerms docs must be in order
+     */
+    private Vector<QueryTermVector> getHitsTerms( TopDocs hits, int docsRelevantCount, Properties prop, boolean precomputed )
+    throws IOException
+    {
+        String docSource = prop.getProperty( QueryExpansion.DOC_SOURCE_FLD );
+        if ( docSource != null && !docSource.equals( QueryExpansion.DOC_SOURCE_LOCAL ) )
+        {
+            throw new RuntimeException( docSource + ": is not implemented" );
+        }
+        
+        Vector<QueryTermVector> docsTerms = new Vector<QueryTermVector>();
+        IndexReader idxReader = searcher.getIndexReader();
+        
+        // Process each of the documents
+        for ( int i = 0; ( (i < docsRelevantCount) && (i < hits.scoreDocs.length) ); i++ )
+        {
+            int docId = hits.scoreDocs[i].doc;
+            QueryTermVector docTerms = precomputed ? readFeedbackTerms( idxReader, docId ) 
+                                                   : readTermVector( idxReader, docId );
+            if ( docTerms != null )
+            {
+                docsTerms.add( docTerms );
+            }
+        }
+        
+        return docsTerms;
+    }
+    
+    
+    /**
+     * @return terms of the stored term vector of the doc; null if it has none
+     */
+    private static QueryTermVector readTermVector( IndexReader idxReader, int docId )
+    throws IOException
+    {
+        Terms termVector = idxReader.getTermVector( docId, Defs.FLD_TEXT );
+        return termVector == null ? null : new QueryTermVector( termVector );
+    }
+    
+    
+    /**
+     * @return top terms of the doc precomputed at index time, or its term vector 
+     *         when indexed without them; null if it has no terms
+     */
+    private static QueryTermVector readFeedbackTerms( IndexReader idxReader, int docId )
+    throws IOException
+    {
+        FeedbackTerms feedbackTerms = FeedbackTerms.read( idxReader, docId );
+        if ( feedbackTerms == null )
+        {
+            return readTermVector( idxReader, docId );
+        }
+        // a document without terms has no term vector either
+        return feedbackTerms.getDocTermCount() > 0 ? new QueryTermVector( feedbackTerms ) : null;
+    }
+    
+
     /**
      * Sets boost of terms.  boost = weight = factor(tf*idf)
      *
@@ -406,9 +686,29 @@ public class QueryExpansion
     public Vector<TermQuery> setBoost( Vector<QueryTermVector> docsTerms, float factor, float decayFactor )
     throws IOException
     {
-        Vector<TermQuery> terms = new Vector<TermQuery>();
-		
-		// setBoost for each of the terms of each of the docs
+        TermWeightAccumulator weights = new TermWeightAccumulator();
+        accumulate( docsTerms, factor, decayFactor, weights );
+        
+        return weights.getTerms( Defs.FLD_TEXT );
+    }
+    
+    
+    /**
+     * Adds weights of the terms to <code>weights</code>.  weight = factor(tf*idf)
+     * Weights of equal terms are summed up, so no duplicates are produced.
+     *
+     * @param docsTerms
+     * @param factor - adjustment factor ( ex. alpha or beta )
+     * @param decayFactor - how much importance of document decays with its rank
+     * @param weights - accumulator the weights are added to
+     */
+    public void accumulate( Vector<QueryTermVector> docsTerms, float factor, float decayFactor, TermWeightAccumulator weights )
+    throws IOException
+    {
+        boolean collectionIdf = prop.getProperty( QueryExpansion.IDF_FLD, QueryExpansion.IDF_DOC ).equals( QueryExpansion.IDF_COLLECTION );
+        IndexReader idxReader = searcher.getIndexReader();
+        
+		// accumulate weight for each of the terms of each of the docs
 		for ( int g = 0; g < docsTerms.size(); g++ )
 		{
 			QueryTermVector docTerms = docsTerms.elementAt( g );
@@ -418,33 +718,23 @@ public class QueryExpansion
 			// Increase decay
 			float decay = decayFactor * g;
 
-	        // Populate terms: with TermQuries and set boost
 	        for ( int i = 0; i < docTerms.size(); i++ )
 	        {
-	            // Create Term
-	            String termTxt = termsTxt[i];
-	            Term term = new Term( Defs.FLD_TEXT, termTxt );
-	            
 	            // Calculate weight
 	            float tf = termFrequencies[i];
-	            float idf = similarity.idf( (long)tf, docTerms.size() );
+	            float idf;
+	            if ( collectionIdf )
+	                idf = termStats.idf( idxReader, new Term( Defs.FLD_TEXT, termsTxt[i] ), similarity );
+	            else
+	                idf = similarity.idf( (long)tf, docTerms.getDocTermCount() );
 	            float weight = tf * idf;
 				// Adjust weight by decay factor
 				weight = weight - (weight * decay);
 				logger.finest("weight: " + weight);
 	            
-	            // Create TermQuery and add it to the collection
-	            TermQuery termQuery = new TermQuery( term );
-	            // Calculate and set boost
-	            termQuery.setBoost( factor * weight );
-	            terms.add( termQuery );
+	            weights.add( termsTxt[i], factor * weight );
 	        }
 		}
-		
-		// Get rid of duplicates by merging termQueries with equal terms
-		merge( terms );		
-        
-        return terms;
     }
     
     
@@ -534,25 +824,28 @@ public class QueryExpansion
 
 
     /**
-     * Returns <code> QueryExpansion.TERM_NUM_FLD </code> expanded terms from the most recent query
+     * Returns <code> QueryExpansion.TERM_NUM_FLD </code> first terms of the expanded terms
      * 
      * @return
      */
-    public Vector<TermQuery> getExpandedTerms()
+    private Vector<TermQuery> firstTerms( Vector<TermQuery> expandedTerms )
     {
         int termNum = Integer.valueOf( prop.getProperty( QueryExpansion.TERM_NUM_FLD ) ).intValue();
-        if (termNum > this.expandedTerms.size()) termNum = this.expandedTerms.size();
+        if (termNum > expandedTerms.size()) termNum = expandedTerms.size();
         Vector<TermQuery> terms = new Vector<TermQuery>();
         
         // Return only necessary number of terms
-        List<TermQuery> list = this.expandedTerms.subList( 0, termNum );
+        List<TermQuery> list = expandedTerms.subList( 0, termNum );
         terms.addAll( list );
         
         return terms;
     }
     
 
-    private void setExpandedTerms( String str )
+    /**
+     * Creates term queries of the whitespace separated terms of the string
+     */
+    private Vector<TermQuery> getTerms( String str )
     {
     	Vector<TermQuery> terms = new Vector<TermQuery>();
 		
@@ -577,12 +870,7 @@ public class QueryExpansion
 		// Get rid of duplicates by merging termQueries with equal terms
 		merge( terms );		
                 
-		setExpandedTerms ( terms );
-    }
-
-    private void setExpandedTerms( Vector<TermQuery> expandedTerms )
-    {   
-        this.expandedTerms = expandedTerms;
+		return terms;
     }
     
     
@@ -56,6 +56,7 @@ public class QueryExpansionTest {
 
         BufferedReader reader = null;
         BufferedReader in = null;
+        SearchSession session = new SearchSession("search.prop");
 		
 		try {
 			
@@ -71,22 +72,16 @@ public class QueryExpansionTest {
 			    }
 				
 				// query expansion here
-				String[] args_file = {"search.prop", line.trim()};
-				
 				if (queryexpansion.equalsIgnoreCase("rocchio")) {
-		    		SearchFilesRocchio.main ( args_file );
-		    		if (SearchFilesRocchio.expandedQuery.length() > 0)
-		    			query = SearchFilesRocchio.expandedQuery; 
+		    		session.search(line.trim(), QueryExpansion.ROCCHIO_METHOD);
 				} else if (queryexpansion.equalsIgnoreCase("lda")) {
-		    		SearchFilesLDA.main ( args_file );
-		    		if (SearchFilesLDA.expandedQuery.length() > 0)
-		    			query = SearchFilesLDA.expandedQuery; 
+		    		session.search(line.trim(), QueryExpansion.LDA_METHOD);
 				}
 				query = null;
 			}			
 			
 		} finally {
-
+			session.close();
 		}
         
 	}
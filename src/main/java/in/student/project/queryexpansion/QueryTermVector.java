@@ -27,13 +27,19 @@ import java.util.Map;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
 
 import in.student.project.queryexpansion.TermAttribute;
+import in.student.project.util.FeedbackTerms;
 
 
 public class QueryTermVector {
   private String [] terms = new String[0];
   private int [] termFreqs = new int[0];
+  // distinct terms of the whole document; more than size() if only its top terms are kept
+  private int docTermCount = -1;
 
   public String getField() { return null;  }
 
@@ -46,6 +52,45 @@ public class QueryTermVector {
     processTerms(queryTerms);
   }
 
+  /**
+   * Reads terms and their frequencies from a stored term vector; the terms
+   * are already analyzed and unique, so no tokenizing or merging is needed.
+   * Terms stay in index (UTF-8 byte) order.
+   *
+   * @param termVector term vector of a single document
+   */
+  public QueryTermVector(Terms termVector) throws IOException {
+    int size = (int) termVector.size();
+    if (size < 0) size = 16;
+    String [] tmpTerms = new String[size];
+    int [] tmpFreqs = new int[size];
+    int i = 0;
+    TermsEnum termsEnum = termVector.iterator(null);
+    BytesRef text;
+    while ((text = termsEnum.next()) != null) {
+      if (i == tmpTerms.length) {
+        tmpTerms = Arrays.copyOf(tmpTerms, i * 2);
+        tmpFreqs = Arrays.copyOf(tmpFreqs, i * 2);
+      }
+      tmpTerms[i] = text.utf8ToString();
+      tmpFreqs[i] = (int) termsEnum.totalTermFreq();
+      i++;
+    }
+    terms = i == tmpTerms.length ? tmpTerms : Arrays.copyOf(tmpTerms, i);
+    termFreqs = i == tmpFreqs.length ? tmpFreqs : Arrays.copyOf(tmpFreqs, i);
+  }
+
+  /**
+   * Top terms of a document, precomputed at index time
+   *
+   * @param feedbackTerms terms of a single document
+   */
+  public QueryTermVector(FeedbackTerms feedbackTerms) {
+    terms = feedbackTerms.getTerms();
+    termFreqs = feedbackTerms.getTermFrequencies();
+    docTermCount = feedbackTerms.getDocTermCount();
+  }
+
   public QueryTermVector(String queryString, Analyzer analyzer) throws IOException {    
     if (analyzer != null)
     {
@@ -117,6 +162,13 @@ public class QueryTermVector {
     return terms.length;
   }
 
+  /**
+   * @return number of distinct terms of the document; size() unless only its top terms are kept
+   */
+  public int getDocTermCount() {
+    return docTermCount < 0 ? terms.length : docTermCount;
+  }
+
   public String[] getTerms() {
     return terms;
   }
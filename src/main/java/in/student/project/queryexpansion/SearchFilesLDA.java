@@ -55,194 +55,40 @@ package in.student.project.queryexpansion;
  * <http://www.apache.org/>.
  */
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.Properties;
-import java.util.StringTokenizer;
-import java.util.Vector;
-import java.util.logging.Logger;
-
-import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.analysis.standard.StandardAnalyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
-import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.Term;
-import org.apache.lucene.queryparser.classic.QueryParser;
-import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.Query;
-import org.apache.lucene.search.TermQuery;
-import org.apache.lucene.search.TopDocs;
-import org.apache.lucene.search.similarities.TFIDFSimilarity;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.util.Version;
-import in.student.project.util.Defs;
-import in.student.project.util.Utils;
 import in.student.project.queryexpansion.QueryExpansion;
 
 
 class SearchFilesLDA
 {
 
-    private static Logger logger = Logger.getLogger( "SearchFilesLDA" );
-    public static String expandedQuery = "";
-
     /**
      *
      * args
      * 0 - properties_file
+     * 1 - query (optional); if given only this query is searched
      * 
-     * # index-dir
-     * index-dir = index
-     * 
-     * # query-file
-     * query-file = queries.txt
-     * 
-     * # out-count
-     * docs-per-query = 1000
-     * 
-     * # query-term-count (0 - any count) (ex. queries with only 3 terms - 3 )
-     * query-terms-count = 0
-     * 
-     * # out-file - name of the file where results will be written
-     * out-file = search.result
-     *
-     * #query-expansion
-     * For details see <code> QueryExpansion Constants</code> 
+     * For the properties see <code>SearchSession</code>
      * @throws Exception 
      *
      */
     public static void main( String[] args ) throws Exception
     {
-        // Load Properties
-        Properties properties = new Properties();
-        properties.load( new FileInputStream( args[0] ) );
-        String runTag = args[0];
-        String remoteQuery = "";
-        if (args.length > 1) {
-        	remoteQuery = args[1];
-        	expandedQuery = "";
-        }
-        
-        properties.setProperty( Defs.RUN_TAG_FLD, runTag );
-        String indexDir = properties.getProperty( "index-dir" );
-        String queryFile = properties.getProperty( "query-file" );
-        int termCount = Integer.valueOf( properties.getProperty( "query-terms-count" ) ).intValue();
-        int outCount = Integer.valueOf( properties.getProperty( "docs-per-query" ) ).intValue();
-        String queryFileName = properties.getProperty( "query-file" );
-        String outFileName = runTag + properties.getProperty( "out-file" );
-        String queryExpansionFlag = properties.getProperty( QueryExpansion.METHOD_FLD, "" );
-
-        IndexReader idxReader = DirectoryReader.open(FSDirectory.open(new File(indexDir)));
-        IndexSearcher searcher = new IndexSearcher( idxReader );
-        Analyzer analyzer = new StandardAnalyzer(Version.LUCENE_48);
-        BufferedWriter writer = new BufferedWriter( new FileWriter( new File( outFileName ) ) );
-        String query_num = null;
-        BufferedReader in = new BufferedReader( new FileReader( queryFileName ) );
-        TFIDFSimilarity similarity = null;
-        int hitsCount = 50;
-
-        while (true)
+        SearchSession session = new SearchSession( args[0] );
+        try
         {
-            String line;
-            line = in.readLine();
-            try
+            String method = QueryExpansion.LDA_METHOD;
+            if ( args.length > 1 )
             {
-                if ( line.length() == -1 )
-                    break;
+                session.search( args[1], method );
             }
-            catch (Exception e)
+            else
             {
-                return;
+                session.searchQueryFile( method );
             }
-            StringTokenizer tknzr = new StringTokenizer( line );
-            query_num = tknzr.nextToken();
-            line = line.substring( query_num.length() ).trim();
-            if (remoteQuery.length() > 0) line = remoteQuery;
-            String queryStr = line;
-            queryStr = QueryParser.escape(queryStr);
-            QueryParser parser = new QueryParser(Version.LUCENE_48, Defs.FLD_TEXT, analyzer);
-            Query query = parser.parse(queryStr);
-            QueryTermVector queryTermVector = new QueryTermVector( line, analyzer );
-            String[] terms = queryTermVector.getTerms();
-            similarity = (TFIDFSimilarity) searcher.getSimilarity();
-
-            TopDocs hits = searcher.search( query, hitsCount );
-            System.out.println( "query" + " : " + query.toString() );
-            System.out.println( hits.totalHits + " total matching documents" );
-
-            // Query Expansion with LDA
-            QueryExpansion queryExpansion;
-            queryExpansion = new QueryExpansion( analyzer, searcher, similarity, properties );
-            query = queryExpansion.expandQueryLDA( queryStr, hits, properties );
-            expandedQuery = query.toString("contents");
-            logger.info( "Expanded Query: " + query );
-            System.out.println( "Expanded Query: " + query );
-            hits = searcher.search( query, hitsCount );
-            logger.info( hits.totalHits + " total matching documents" );
-            Vector<TermQuery> expandedQueryTerms = queryExpansion.getExpandedTerms();
-            generateOutput( hits, expandedQueryTerms, query_num, writer, termCount, outCount, searcher, similarity, idxReader );
-            
-            writer.flush();
-            if (remoteQuery.length() > 0) break; // onetime call.
         }
-        writer.close();
-
-    }
-
-    /**
-     * Generates necessary output - in this case this output is used as input to matlab
-     * @param hits
-     * @param terms
-     * @param query_num - tag of the query
-     * @param writer
-     * @param termCount
-     * @param outCount
-     * @param idxReader 
-     * @param similarity 
-     * @param searcher 
-     * @throws IOException 
-     */
-    private static void generateOutput( TopDocs hits, Vector<TermQuery> terms, String query_num, BufferedWriter writer, int termCount, int outCount, IndexSearcher searcher, TFIDFSimilarity similarity,
-            IndexReader idxReader ) throws IOException
-    {
-        logger.finer( "terms.size(): " + terms.size() );
-        // Generate Output
-        // For each doc
-        for ( int i = 0; ((i < hits.scoreDocs.length) && (i < outCount)); i++ )
+        finally
         {
-            Document doc = searcher.doc(hits.scoreDocs[i].doc);
-            String docno = ((Field) doc.getField( "DOCNO" )).stringValue();
-            int docId = hits.scoreDocs[i].doc;
-            float coord = Utils.coord( terms, doc, docId, similarity, idxReader );
-
-            writer.write( query_num + " " + "Q0" + " " + docno + " " + (i + 1) + " " + hits.scoreDocs[i].score + " " + coord );
-            // For each term output normalized: tf, idf, boostFactor
-            for ( int j = 0; j < termCount; j++ )
-            {
-                if ( j < terms.size() )
-                {
-                    TermQuery termQuery = terms.elementAt( j );
-                    Term term = termQuery.getTerm();
-                    String termStr = term.text();
-                    float tf = Utils.getTFNorm( termStr, doc, docId, similarity, idxReader, true );
-                    float idf = Utils.getIDFNorm( termStr, terms, idxReader, similarity, true );
-                    float boost = Utils.getBoostNorm( termQuery, terms );
-                    writer.write( " " + tf + " " + idf + " " + boost + " " );
-                }
-                // If not enough terms pad with 0's
-                else
-                {
-                    writer.write( " 0 0 0 " );
-                }
-            }
-            writer.write( "\n" );
+            session.close();
         }
     }
 }
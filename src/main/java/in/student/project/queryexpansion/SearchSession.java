@@ -0,0 +1,427 @@
+package in.student.project.queryexpansion;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Properties;
+import java.util.StringTokenizer;
+import java.util.Vector;
+import java.util.logging.Logger;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Version;
+import in.student.project.util.Defs;
+import in.student.project.util.DocTermFreqs;
+import in.student.project.util.TermStatsCache;
+import in.student.project.util.Utils;
+
+/**
+ * Search session: index reader, searcher, analyzer, properties and
+ * query expansion engine are created once and serve any number of queries.
+ * Results of all the queries are written to one output file.
+ * <p>
+ * Properties
+ *
+ * # index-dir
+ * index-dir = index
+ *
+ * # query-file
+ * query-file = queries.txt
+ *
+ * # out-count
+ * docs-per-query = 1000
+ *
+ * # query-term-count (0 - any count) (ex. queries with only 3 terms - 3 )
+ * query-terms-count = 0
+ *
+ * # out-file - name of the file where results will be written; prefixed with run tag
+ * out-file = search.result
+ *
+ * #query-expansion
+ * For details see <code> QueryExpansion Constants</code>
+ */
+public class SearchSession implements Closeable
+{
+    private static Logger logger = Logger.getLogger( "SearchSession" );
+
+    /**
+     * Number of hits retrieved for the original and the expanded query
+     */
+    public static final int HITS_COUNT = 50;
+
+    private Properties properties;
+    private IndexReader idxReader;
+    private IndexSearcher searcher;
+    private Analyzer analyzer;
+    private TFIDFSimilarity similarity;
+    // statistics of the index of this session
+    private TermStatsCache termStats;
+    private QueryExpansion queryExpansion;
+    private BufferedWriter writer;
+    private int termCount;
+    private int outCount;
+    private String defaultQueryNum;
+
+    /**
+     * Creates a session configured by the properties file;
+     * the name of the file is used as run tag
+     *
+     * @param propFile - properties file
+     */
+    public SearchSession( String propFile ) throws IOException
+    {
+        this( loadProperties( propFile ), propFile );
+    }
+
+    /**
+     * @param properties - see class description
+     * @param runTag - tag of the run; prefix of the output file
+     */
+    public SearchSession( Properties properties, String runTag ) throws IOException
+    {
+        this.properties = properties;
+        properties.setProperty( Defs.RUN_TAG_FLD, runTag );
+        String indexDir = properties.getProperty( "index-dir" );
+        termCount = Integer.valueOf( properties.getProperty( "query-terms-count" ) ).intValue();
+        outCount = Integer.valueOf( properties.getProperty( "docs-per-query" ) ).intValue();
+        String outFileName = runTag + properties.getProperty( "out-file" );
+
+        idxReader = DirectoryReader.open( FSDirectory.open( new File( indexDir ) ) );
+        searcher = new IndexSearcher( idxReader );
+        analyzer = new StandardAnalyzer( Version.LUCENE_48 );
+        similarity = (TFIDFSimilarity) searcher.getSimilarity();
+        termStats = new TermStatsCache( TermStatsCache.DEFAULT_MAX_SIZE );
+        queryExpansion = new QueryExpansion( analyzer, searcher, similarity, properties, termStats );
+        writer = new BufferedWriter( new FileWriter( new File( outFileName ) ) );
+    }
+
+    private static Properties loadProperties( String propFile ) throws IOException
+    {
+        Properties properties = new Properties();
+        InputStream in = new FileInputStream( propFile );
+        try
+        {
+            properties.load( in );
+        }
+        finally
+        {
+            in.close();
+        }
+        return properties;
+    }
+
+    /**
+     * Searches every query of the <code>query-file</code>;
+     * each line is: query_num query
+     *
+     * @param method - query expansion method; see <code>search( String, String, String )</code>
+     * @return expanded query of the last query
+     */
+    public String searchQueryFile( String method ) throws IOException, ParseException
+    {
+        String expandedQuery = "";
+        BufferedReader in = new BufferedReader( new FileReader( properties.getProperty( "query-file" ) ) );
+        try
+        {
+            String line;
+            while ( ( line = in.readLine() ) != null )
+            {
+                StringTokenizer tknzr = new StringTokenizer( line );
+                if ( !tknzr.hasMoreTokens() )
+                    continue;
+                String queryNum = tknzr.nextToken();
+                expandedQuery = search( queryNum, line.substring( queryNum.length() ).trim(), method );
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return expandedQuery;
+    }
+
+    /**
+     * Searches a query that does not come from the <code>query-file</code>;
+     * its results are tagged with the number of the first query of the file
+     *
+     * @return expanded query
+     */
+    public String search( String queryStr, String method ) throws IOException, ParseException
+    {
+        return search( getDefaultQueryNum(), queryStr, method );
+    }
+
+    /**
+     * Searches the query, expands it, searches the expanded query and writes
+     * its results to the output file
+     *
+     * @param queryNum - tag of the query
+     * @param line - query
+     * @param method - <code>QueryExpansion.ROCCHIO_METHOD</code>,
+     *                 <code>QueryExpansion.LDA_METHOD</code>;
+     *                 any other value - query is not expanded and no results are written
+     * @return expanded query; empty if the query is not expanded
+     */
+    public String search( String queryNum, String line, String method ) throws IOException, ParseException
+    {
+        return write( execute( queryNum, line, method ) );
+    }
+
+    /**
+     * Same as <code>execute( String, String, String )</code> for a query 
+     * that does not come from the <code>query-file</code>
+     */
+    public Result execute( String line, String method ) throws IOException, ParseException
+    {
+        return execute( getDefaultQueryNum(), line, method );
+    }
+
+    /**
+     * Searches the query, expands it and searches the expanded query; nothing
+     * is written. May be called from several threads at once.
+     *
+     * @see #search( String, String, String )
+     * @return result to be passed to <code>write( Result )</code>
+     */
+    public Result execute( String queryNum, String line, String method ) throws IOException, ParseException
+    {
+        String queryStr = QueryParser.escape( line );
+        QueryParser parser = new QueryParser( Version.LUCENE_48, Defs.FLD_TEXT, analyzer );
+        Query query = parser.parse( queryStr );
+
+        TopDocs hits = searcher.search( query, HITS_COUNT );
+        Result result = new Result( queryNum, method, query, hits.totalHits );
+
+        // Query Expansion with Rocchio algorithm
+        if ( method.equals( QueryExpansion.ROCCHIO_METHOD ) )
+        {
+            result.expansion = queryExpansion.expandQuery( queryStr, hits, properties );
+        }
+        // Query Expansion with LDA
+        else if ( method.equals( QueryExpansion.LDA_METHOD ) )
+        {
+            result.expansion = queryExpansion.expandQueryLDA( queryStr, hits, properties );
+        }
+        else
+        {
+            return result;
+        }
+        result.hits = searcher.search( result.expansion.getQuery(), HITS_COUNT );
+        // features are computed here, so they are computed by the calling thread
+        StringWriter output = new StringWriter();
+        generateOutput( result.hits, result.expansion.getTerms(), queryNum, output );
+        result.output = output.toString();
+        
+        return result;
+    }
+
+    /**
+     * Prints the result and writes it to the output file;
+     * results are written in the order of the calls
+     *
+     * @return expanded query; empty if the query is not expanded
+     */
+    public synchronized String write( Result result ) throws IOException
+    {
+        System.out.println( "query" + " : " + result.query.toString() );
+        System.out.println( result.totalHits + " total matching documents" );
+
+        if ( result.method.equals( QueryExpansion.ROCCHIO_METHOD ) )
+        {
+            System.out.println( "Expanded Query: " + result.expansion.getQuery() );
+            logger.fine( result.expansion.toString() );
+            writer.write( result.output );
+        }
+        else if ( result.method.equals( QueryExpansion.LDA_METHOD ) )
+        {
+            logger.info( "Expanded Query: " + result.expansion.getQuery() );
+            System.out.println( "Expanded Query: " + result.expansion.getQuery() );
+            logger.info( result.hits.totalHits + " total matching documents" );
+            logger.fine( result.expansion.toString() );
+            writer.write( result.output );
+        }
+
+        writer.flush();
+        return result.getExpandedQuery();
+    }
+
+    /**
+     * Original and expanded query with the hits of the expanded query
+     */
+    public static class Result
+    {
+        private final String queryNum;
+        private final String method;
+        private final Query query;
+        private final int totalHits;
+        private ExpansionResult expansion;
+        private TopDocs hits;
+        private String output;
+
+        Result( String queryNum, String method, Query query, int totalHits )
+        {
+            this.queryNum = queryNum;
+            this.method = method;
+            this.query = query;
+            this.totalHits = totalHits;
+        }
+
+        public String getQueryNum()
+        {
+            return queryNum;
+        }
+
+        /**
+         * @return expansion of the query; null if the query is not expanded
+         */
+        public ExpansionResult getExpansion()
+        {
+            return expansion;
+        }
+
+        /**
+         * @return expanded query; empty if the query is not expanded
+         */
+        public String getExpandedQuery()
+        {
+            return expansion == null || expansion.getQuery() == null ? "" : expansion.getQuery().toString( Defs.FLD_TEXT );
+        }
+    }
+
+    private synchronized String getDefaultQueryNum() throws IOException
+    {
+        if ( defaultQueryNum == null )
+        {
+            BufferedReader in = new BufferedReader( new FileReader( properties.getProperty( "query-file" ) ) );
+            try
+            {
+                String line = in.readLine();
+                StringTokenizer tknzr = new StringTokenizer( line == null ? "" : line );
+                defaultQueryNum = tknzr.hasMoreTokens() ? tknzr.nextToken() : "";
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        return defaultQueryNum;
+    }
+
+    /**
+     * Generates necessary output - in this case this output is used as input to matlab
+     * @param hits
+     * @param terms
+     * @param query_num - tag of the query
+     * @param writer - where the output is written
+     * @throws IOException
+     */
+    private void generateOutput( TopDocs hits, Vector<TermQuery> terms, String query_num, Writer writer ) throws IOException
+    {
+        logger.finer( "terms.size(): " + terms.size() );
+        // idf of the terms is normalized by the same max for all the docs
+        float maxIdf = termStats.maxIdf( idxReader, terms, similarity );
+        // Generate Output
+        // For each doc
+        for ( int i = 0; ((i < hits.scoreDocs.length) && (i < outCount)); i++ )
+        {
+            Document doc = searcher.doc(hits.scoreDocs[i].doc);
+            String docno = ((Field) doc.getField( "DOCNO" )).stringValue();
+            int docId = hits.scoreDocs[i].doc;
+            // decode the term vector once for all the terms
+            DocTermFreqs docTerms = DocTermFreqs.read( idxReader, docId );
+            float coord = Utils.coord( terms, docTerms, similarity );
+
+            writer.write( query_num + " " + "Q0" + " " + docno + " " + (i + 1) + " " + hits.scoreDocs[i].score + " " + coord );
+            // For each term output normalized: tf, idf, boostFactor
+            for ( int j = 0; j < termCount; j++ )
+            {
+                if ( j < terms.size() )
+                {
+                    TermQuery termQuery = terms.elementAt( j );
+                    Term term = termQuery.getTerm();
+                    String termStr = term.text();
+                    float tf = Utils.getTFNorm( termStr, doc, docId, docTerms, similarity, idxReader, termStats );
+                    float idf = Utils.getIDFNorm( termStr, maxIdf, idxReader, similarity, termStats );
+                    float boost = Utils.getBoostNorm( termQuery, terms );
+                    writer.write( " " + tf + " " + idf + " " + boost + " " );
+                }
+                // If not enough terms pad with 0's
+                else
+                {
+                    writer.write( " 0 0 0 " );
+                }
+            }
+            writer.write( "\n" );
+        }
+    }
+
+    public Properties getProperties()
+    {
+        return properties;
+    }
+
+    public IndexSearcher getSearcher()
+    {
+        return searcher;
+    }
+
+    public Analyzer getAnalyzer()
+    {
+        return analyzer;
+    }
+
+    /**
+     * @return statistics cache of the index of this session
+     */
+    public TermStatsCache getTermStats()
+    {
+        return termStats;
+    }
+
+    /**
+     * @return query expansion engine; shared by all the threads
+     */
+    public QueryExpansion getQueryExpansion()
+    {
+        return queryExpansion;
+    }
+
+    /**
+     * Closes the output file and the index
+     */
+    public void close() throws IOException
+    {
+        try
+        {
+            writer.close();
+            analyzer.close();
+        }
+        finally
+        {
+            idxReader.close();
+        }
+        logger.info( termStats.toString() );
+    }
+}
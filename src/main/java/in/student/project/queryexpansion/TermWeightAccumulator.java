@@ -0,0 +1,270 @@
+/*
+ * TermWeightAccumulator.java
+ */
+
+package in.student.project.queryexpansion;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Accumulates term weights for query expansion.
+ * <p>
+ * Open-addressing (linear probing) hash map from term text to a primitive
+ * float weight. Terms are kept in dense arrays in insertion order, so adding
+ * a weight is O(1) and no <code>TermQuery</code> is created until the final
+ * expanded terms are requested.
+ */
+public class TermWeightAccumulator
+{
+    private static final int DEFAULT_CAPACITY = 256;
+
+    // slot -> (index into terms/weights) + 1; 0 marks an empty slot
+    private int[] table;
+    private String[] terms;
+    private float[] weights;
+    private int size;
+
+    /** Creates a new instance of TermWeightAccumulator */
+    public TermWeightAccumulator()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+
+    /**
+     * @param expectedTerms - number of distinct terms expected
+     */
+    public TermWeightAccumulator( int expectedTerms )
+    {
+        int capacity = 16;
+        while ( capacity < expectedTerms * 2 )
+        {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        terms = new String[capacity >> 1];
+        weights = new float[capacity >> 1];
+        size = 0;
+    }
+
+    /**
+     * Adds <code>weight</code> to the weight of <code>term</code>;
+     * the term is inserted if it is not present yet
+     */
+    public void add( String term, float weight )
+    {
+        int mask = table.length - 1;
+        int slot = hash( term ) & mask;
+        while ( table[slot] != 0 )
+        {
+            int idx = table[slot] - 1;
+            if ( terms[idx].equals( term ) )
+            {
+                weights[idx] += weight;
+                return;
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+
+        if ( size == terms.length )
+        {
+            grow();
+            add( term, weight );
+            return;
+        }
+        terms[size] = term;
+        weights[size] = weight;
+        table[slot] = ++size;
+    }
+
+    /**
+     * @return accumulated weight of the term; 0 if the term is not present
+     */
+    public float get( String term )
+    {
+        int mask = table.length - 1;
+        int slot = hash( term ) & mask;
+        while ( table[slot] != 0 )
+        {
+            int idx = table[slot] - 1;
+            if ( terms[idx].equals( term ) )
+            {
+                return weights[idx];
+            }
+            slot = ( slot + 1 ) & mask;
+        }
+        return 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return text of the i-th term in insertion order
+     */
+    public String term( int i )
+    {
+        return terms[i];
+    }
+
+    /**
+     * @return weight of the i-th term in insertion order
+     */
+    public float weight( int i )
+    {
+        return weights[i];
+    }
+
+    /**
+     * Creates term queries for the <code>maxTerms</code> heaviest terms,
+     * sorted by weight in descending order. The weight is set as boost.
+     * Terms with equal weight keep their insertion order.
+     * <p>
+     * Terms are selected with a bounded min-heap of term indexes, so
+     * selection is O(n log maxTerms) and only the selected terms are sorted.
+     *
+     * @param field - of the created terms
+     * @param maxTerms - maximum number of term queries to create
+     */
+    public Vector<TermQuery> getTopTerms( String field, int maxTerms )
+    {
+        int termCount = Math.max( 0, Math.min( size, maxTerms ) );
+        Vector<TermQuery> termQueries = new Vector<TermQuery>( termCount );
+        if ( termCount == 0 )
+        {
+            return termQueries;
+        }
+
+        // heap[0] is the worst of the selected terms
+        int[] heap = new int[termCount];
+        int heapSize = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            if ( heapSize < termCount )
+            {
+                heap[heapSize] = i;
+                siftUp( heap, heapSize++ );
+            }
+            else if ( ranksBefore( i, heap[0] ) )
+            {
+                heap[0] = i;
+                siftDown( heap, 0, heapSize );
+            }
+        }
+
+        // Pop the worst terms to the end to get descending order
+        for ( int n = heapSize - 1; n > 0; n-- )
+        {
+            int worst = heap[0];
+            heap[0] = heap[n];
+            heap[n] = worst;
+            siftDown( heap, 0, n );
+        }
+
+        for ( int i = 0; i < termCount; i++ )
+        {
+            termQueries.add( toTermQuery( field, heap[i] ) );
+        }
+        return termQueries;
+    }
+
+    /**
+     * Creates term queries for all the terms in insertion order
+     *
+     * @param field - of the created terms
+     */
+    public Vector<TermQuery> getTerms( String field )
+    {
+        Vector<TermQuery> termQueries = new Vector<TermQuery>( size );
+        for ( int i = 0; i < size; i++ )
+        {
+            termQueries.add( toTermQuery( field, i ) );
+        }
+        return termQueries;
+    }
+
+    private TermQuery toTermQuery( String field, int i )
+    {
+        TermQuery termQuery = new TermQuery( new Term( field, terms[i] ) );
+        termQuery.setBoost( weights[i] );
+        return termQuery;
+    }
+
+    /**
+     * @return true if term i ranks before term j: 
+     *         it is heavier, or equally heavy and was inserted earlier
+     */
+    private boolean ranksBefore( int i, int j )
+    {
+        return weights[i] > weights[j] || ( weights[i] == weights[j] && i < j );
+    }
+
+    private void siftUp( int[] heap, int pos )
+    {
+        int term = heap[pos];
+        while ( pos > 0 )
+        {
+            int parent = ( pos - 1 ) >> 1;
+            if ( !ranksBefore( heap[parent], term ) )
+            {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = term;
+    }
+
+    private void siftDown( int[] heap, int pos, int heapSize )
+    {
+        int term = heap[pos];
+        int child;
+        while ( ( child = ( pos << 1 ) + 1 ) < heapSize )
+        {
+            // pick the worse child
+            if ( child + 1 < heapSize && ranksBefore( heap[child], heap[child + 1] ) )
+            {
+                child++;
+            }
+            if ( !ranksBefore( term, heap[child] ) )
+            {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = term;
+    }
+
+    private void grow()
+    {
+        int[] oldTable = table;
+        table = new int[oldTable.length << 1];
+        terms = Arrays.copyOf( terms, table.length >> 1 );
+        weights = Arrays.copyOf( weights, table.length >> 1 );
+
+        // re-insert indexes; terms are unique so no equality checks needed
+        int mask = table.length - 1;
+        for ( int i = 0; i < size; i++ )
+        {
+            int slot = hash( terms[i] ) & mask;
+            while ( table[slot] != 0 )
+            {
+                slot = ( slot + 1 ) & mask;
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    private static int hash( String term )
+    {
+        int h = term.hashCode();
+        // spread higher bits; table size is a power of two
+        return h ^ ( h >>> 16 );
+    }
+}
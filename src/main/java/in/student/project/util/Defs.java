@@ -15,6 +15,15 @@ public class Defs
     
 public static final String FLD_TEXT = "contents";
 
+/** Numeric doc values field holding the number of terms of <code>FLD_TEXT</code> */
+public static final String FLD_TEXT_LENGTH = "contents_length";
+
+/** Path of the bundle the document was read from, relative to the dataset root */
+public static final String FLD_BUNDLE = "bundle";
+
+/** Binary doc values field holding the top terms of <code>FLD_TEXT</code>; see <code>FeedbackTerms</code> */
+public static final String FLD_FEEDBACK_TERMS = "contents_feedback";
+
 public static final String RUN_TAG_FLD = "run.tag";
 
 }
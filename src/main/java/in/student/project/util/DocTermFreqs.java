@@ -0,0 +1,75 @@
+package in.student.project.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Term frequencies of one document.
+ * <p>
+ * The term vector of the document is decoded once into a map, so tf of
+ * any number of terms (e.g. all the expanded terms) is a single lookup
+ * instead of a scan of the whole term vector.
+ */
+public class DocTermFreqs
+{
+    private static final DocTermFreqs EMPTY = new DocTermFreqs();
+
+    private final HashMap<String, Integer> freqs;
+
+    private DocTermFreqs()
+    {
+        freqs = new HashMap<String, Integer>();
+    }
+
+    /**
+     * @param termVector - of the document; must not be null
+     */
+    public DocTermFreqs( Terms termVector ) throws IOException
+    {
+        long size = termVector.size();
+        freqs = new HashMap<String, Integer>( size > 0 ? (int) ( size * 4 / 3 ) + 1 : 16 );
+        TermsEnum termsEnum = termVector.iterator( null );
+        BytesRef term;
+        while ( ( term = termsEnum.next() ) != null )
+        {
+            freqs.put( term.utf8ToString(), Integer.valueOf( (int) termsEnum.totalTermFreq() ) );
+        }
+    }
+
+    /**
+     * Reads the term vector of <code>Defs.FLD_TEXT</code> of the document
+     *
+     * @return term frequencies; empty if the document has no term vector
+     */
+    public static DocTermFreqs read( IndexReader idxReader, int docId ) throws IOException
+    {
+        Terms termVector = idxReader.getTermVector( docId, Defs.FLD_TEXT );
+        if ( termVector == null )
+        {
+            return EMPTY;
+        }
+        return new DocTermFreqs( termVector );
+    }
+
+    /**
+     * @return tf(t in d); 0 if the document does not contain the term
+     */
+    public int tf( String term )
+    {
+        Integer freq = freqs.get( term );
+        return freq == null ? 0 : freq.intValue();
+    }
+
+    /**
+     * @return number of distinct terms of the document
+     */
+    public int size()
+    {
+        return freqs.size();
+    }
+}
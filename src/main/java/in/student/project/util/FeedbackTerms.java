@@ -0,0 +1,223 @@
+package in.student.project.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Top terms of one document for query expansion, computed at index time.
+ * <p>
+ * The terms of <code>Defs.FLD_TEXT</code> are weighted as Rocchio weights
+ * feedback terms, tf * idf( tf, number of distinct terms ), and the top
+ * terms are kept in <code>Defs.FLD_FEEDBACK_TERMS</code> binary doc values:
+ * number of distinct terms of the document, number of kept terms, then
+ * each term and its tf. Terms are in index (UTF-8 byte) order, as in the
+ * term vector of the document.
+ * <p>
+ * So the feedback terms of a hit are one doc values lookup, instead of
+ * decoding its whole term vector.
+ */
+public class FeedbackTerms
+{
+    public static final int DEFAULT_MAX_TERMS = 100;
+
+    private final String[] terms;
+    private final int[] termFreqs;
+    private final int docTermCount;
+
+    private FeedbackTerms( String[] terms, int[] termFreqs, int docTermCount )
+    {
+        this.terms = terms;
+        this.termFreqs = termFreqs;
+        this.docTermCount = docTermCount;
+    }
+
+    /**
+     * Counts the terms of the text as the analyzer indexes them
+     *
+     * @return term - tf
+     */
+    public static Map<String, Integer> analyze( Analyzer analyzer, String text ) throws IOException
+    {
+        HashMap<String, Integer> freqs = new HashMap<String, Integer>();
+        TokenStream stream = analyzer.tokenStream( Defs.FLD_TEXT, text );
+        try
+        {
+            CharTermAttribute termAtt = stream.addAttribute( CharTermAttribute.class );
+            stream.reset();
+            while ( stream.incrementToken() )
+            {
+                String term = termAtt.toString();
+                Integer freq = freqs.get( term );
+                freqs.put( term, Integer.valueOf( freq == null ? 1 : freq.intValue() + 1 ) );
+            }
+            stream.end();
+        }
+        finally
+        {
+            stream.close();
+        }
+        return freqs;
+    }
+
+    /** Term of the document with its tf and weight */
+    private static class WeightedTerm
+    {
+        final BytesRef bytes;
+        final int tf;
+        final float weight;
+
+        WeightedTerm( String term, int tf, float weight )
+        {
+            this.bytes = new BytesRef( term );
+            this.tf = tf;
+            this.weight = weight;
+        }
+    }
+
+    // highest weight first; equal weights in index order
+    private static final Comparator<WeightedTerm> BY_WEIGHT = new Comparator<WeightedTerm>()
+    {
+        public int compare( WeightedTerm a, WeightedTerm b )
+        {
+            int cmp = Float.compare( b.weight, a.weight );
+            return cmp != 0 ? cmp : a.bytes.compareTo( b.bytes );
+        }
+    };
+
+    private static final Comparator<WeightedTerm> BY_TERM = new Comparator<WeightedTerm>()
+    {
+        public int compare( WeightedTerm a, WeightedTerm b )
+        {
+            return a.bytes.compareTo( b.bytes );
+        }
+    };
+
+    /**
+     * @param termFreqs - all the terms of the document with their tf
+     * @param maxTerms - number of the top weighted terms to keep
+     * @return value of <code>Defs.FLD_FEEDBACK_TERMS</code>
+     */
+    public static BytesRef encode( Map<String, Integer> termFreqs, int maxTerms, TFIDFSimilarity similarity )
+    {
+        int docTermCount = termFreqs.size();
+        List<WeightedTerm> top = new ArrayList<WeightedTerm>( docTermCount );
+        for ( Map.Entry<String, Integer> entry : termFreqs.entrySet() )
+        {
+            int tf = entry.getValue().intValue();
+            top.add( new WeightedTerm( entry.getKey(), tf, tf * similarity.idf( tf, docTermCount ) ) );
+        }
+        if ( top.size() > maxTerms )
+        {
+            Collections.sort( top, BY_WEIGHT );
+            top = top.subList( 0, maxTerms );
+        }
+        Collections.sort( top, BY_TERM );
+
+        // vInts take at most 5 bytes
+        int maxLength = 10;
+        for ( WeightedTerm term : top )
+        {
+            maxLength += 10 + term.bytes.length;
+        }
+        byte[] bytes = new byte[maxLength];
+        ByteArrayDataOutput out = new ByteArrayDataOutput( bytes );
+        try
+        {
+            out.writeVInt( docTermCount );
+            out.writeVInt( top.size() );
+            for ( WeightedTerm term : top )
+            {
+                out.writeVInt( term.bytes.length );
+                out.writeBytes( term.bytes.bytes, term.bytes.offset, term.bytes.length );
+                out.writeVInt( term.tf );
+            }
+        }
+        catch ( IOException e )
+        {
+            // writing to an array
+            throw new RuntimeException( e );
+        }
+        return new BytesRef( bytes, 0, out.getPosition() );
+    }
+
+    /**
+     * Reads the feedback terms of the document; a single lookup in its segment
+     *
+     * @param docId - of the document in the reader
+     * @return feedback terms; null if the index has none
+     */
+    public static FeedbackTerms read( IndexReader reader, int docId ) throws IOException
+    {
+        List<AtomicReaderContext> leaves = reader.leaves();
+        AtomicReaderContext leaf = leaves.get( ReaderUtil.subIndex( docId, leaves ) );
+        BinaryDocValues values = leaf.reader().getBinaryDocValues( Defs.FLD_FEEDBACK_TERMS );
+        if ( values == null )
+        {
+            return null;
+        }
+        BytesRef bytes = new BytesRef();
+        values.get( docId - leaf.docBase, bytes );
+        if ( bytes.length == 0 )
+        {
+            // the document was added without feedback terms
+            return null;
+        }
+        return decode( bytes );
+    }
+
+    /**
+     * @param bytes - value of <code>Defs.FLD_FEEDBACK_TERMS</code>
+     */
+    public static FeedbackTerms decode( BytesRef bytes ) throws IOException
+    {
+        ByteArrayDataInput in = new ByteArrayDataInput( bytes.bytes, bytes.offset, bytes.length );
+        int docTermCount = in.readVInt();
+        int size = in.readVInt();
+        String[] terms = new String[size];
+        int[] termFreqs = new int[size];
+        for ( int i = 0; i < size; i++ )
+        {
+            terms[i] = in.readString();
+            termFreqs[i] = in.readVInt();
+        }
+        return new FeedbackTerms( terms, termFreqs, docTermCount );
+    }
+
+    /**
+     * @return the top terms in index order
+     */
+    public String[] getTerms()
+    {
+        return terms;
+    }
+
+    public int[] getTermFrequencies()
+    {
+        return termFreqs;
+    }
+
+    /**
+     * @return number of distinct terms of the whole document
+     */
+    public int getDocTermCount()
+    {
+        return docTermCount;
+    }
+}
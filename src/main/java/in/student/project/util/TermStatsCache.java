@@ -0,0 +1,291 @@
+package in.student.project.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+
+/**
+ * Caches statistics used to weight terms and normalize output features:
+ * collection statistics (docFreq) of terms, so idf of a term is looked up
+ * in the index only once for all the hits and queries, and lengths of
+ * documents that have no index-time length.
+ * <p>
+ * The cache is thread safe. Values are kept per generation of the index,
+ * keyed by the <code>IndexReader</code> (its core and deletes): the
+ * statistics of the last <code>MAX_READERS</code> readers are kept side by
+ * side, so callers alternating between readers do not invalidate each
+ * other. When one of the caches reaches its maximum size the least
+ * recently used entry is dropped.
+ * <p>
+ * Each search session uses its own instance and passes it to the methods
+ * of <code>Utils</code>.
+ */
+public class TermStatsCache
+{
+    public static final int DEFAULT_MAX_SIZE = 100000;
+    /**
+     * Number of readers whose statistics are kept; the least recently used is dropped
+     */
+    public static final int MAX_READERS = 4;
+    /**
+     * Number of term lists whose maximum idf is kept per reader
+     */
+    public static final int MAX_QUERIES = 1024;
+
+    private final int maxSize;
+    // generations by reader key, least recently used first; guarded by this
+    private final LruMap<Object, Generation> generations = new LruMap<Object, Generation>( MAX_READERS );
+    // generation of the reader used last; saves the lock while the reader does not change
+    private volatile Generation last = new Generation( null, 0, 0 );
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /** Map in access order that drops its least recently used entry above maxSize */
+    private static class LruMap<K, V> extends LinkedHashMap<K, V>
+    {
+        private final int maxSize;
+
+        LruMap( int maxSize )
+        {
+            super( 16, 0.75f, true );
+            this.maxSize = maxSize;
+        }
+
+        protected boolean removeEldestEntry( Map.Entry<K, V> eldest )
+        {
+            return size() > maxSize;
+        }
+    }
+
+    /** Statistics of one reader; the maps are guarded by themselves */
+    private static class Generation
+    {
+        final Object readerKey;
+        final int numDocs;
+        final LruMap<Term, Integer> docFreqs;
+        final LruMap<Integer, Integer> docLengths;
+        // keyed by the similarity followed by the terms
+        final LruMap<List<Object>, Float> maxIdfs;
+
+        Generation( Object readerKey, int numDocs, int maxSize )
+        {
+            this.readerKey = readerKey;
+            this.numDocs = numDocs;
+            this.docFreqs = new LruMap<Term, Integer>( maxSize );
+            this.docLengths = new LruMap<Integer, Integer>( maxSize );
+            this.maxIdfs = new LruMap<List<Object>, Float>( Math.min( maxSize, MAX_QUERIES ) );
+        }
+    }
+
+    private static <K, V> V get( LruMap<K, V> map, K key )
+    {
+        synchronized ( map )
+        {
+            return map.get( key );
+        }
+    }
+
+    private static <K, V> void put( LruMap<K, V> map, K key, V value )
+    {
+        synchronized ( map )
+        {
+            map.put( key, value );
+        }
+    }
+
+    private static int size( LruMap<?, ?> map )
+    {
+        synchronized ( map )
+        {
+            return map.size();
+        }
+    }
+
+    /**
+     * @param maxSize - maximum number of terms ( and of documents ) to cache per reader
+     */
+    public TermStatsCache( int maxSize )
+    {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return number of documents containing the term
+     */
+    public int docFreq( IndexReader reader, Term term ) throws IOException
+    {
+        LruMap<Term, Integer> docFreqs = getGeneration( reader ).docFreqs;
+        Integer docFreq = get( docFreqs, term );
+        if ( docFreq != null )
+        {
+            hits.incrementAndGet();
+            return docFreq.intValue();
+        }
+
+        misses.incrementAndGet();
+        int df = reader.docFreq( term );
+        put( docFreqs, term, Integer.valueOf( df ) );
+        return df;
+    }
+
+    /**
+     * @return idf of the term in the collection; idf( docFreq, numDocs )
+     */
+    public float idf( IndexReader reader, Term term, TFIDFSimilarity similarity ) throws IOException
+    {
+        int docFreq = docFreq( reader, term );
+        return similarity.idf( docFreq, getGeneration( reader ).numDocs );
+    }
+
+    /**
+     * The maximum is cached for the list of terms, so it is computed once
+     * per query however many times its terms are normalized
+     *
+     * @return maximum idf of the terms; 0 if there are no terms
+     */
+    public float maxIdf( IndexReader reader, Vector<TermQuery> terms, TFIDFSimilarity similarity ) throws IOException
+    {
+        List<Object> key = new ArrayList<Object>( terms.size() + 1 );
+        key.add( similarity );
+        for ( int i = 0; i < terms.size(); i++ )
+        {
+            key.add( terms.elementAt( i ).getTerm() );
+        }
+        LruMap<List<Object>, Float> maxIdfs = getGeneration( reader ).maxIdfs;
+        Float cached = get( maxIdfs, key );
+        if ( cached != null )
+        {
+            return cached.floatValue();
+        }
+
+        float maxIdf = 0;
+        for ( int i = 0; i < terms.size(); i++ )
+        {
+            float idf = idf( reader, terms.elementAt( i ).getTerm(), similarity );
+            if ( maxIdf < idf )
+            {
+                maxIdf = idf;
+            }
+        }
+        put( maxIdfs, key, Float.valueOf( maxIdf ) );
+        return maxIdf;
+    }
+
+    /**
+     * Reads the length from <code>Defs.FLD_TEXT_LENGTH</code> doc values of the
+     * document. Documents without the doc value (indexes or segments written
+     * without it read 0) fall back to counting terms of the stored text,
+     * which is cached.
+     *
+     * @param docId - of the document in the reader
+     * @param doc - stored fields of the document; used only without doc values
+     * @return number of terms of the document
+     */
+    public int docLength( IndexReader reader, int docId, Document doc ) throws IOException
+    {
+        // index-time length; a single lookup in the doc's segment
+        List<AtomicReaderContext> leaves = reader.leaves();
+        AtomicReaderContext leaf = leaves.get( ReaderUtil.subIndex( docId, leaves ) );
+        NumericDocValues lengths = leaf.reader().getNumericDocValues( Defs.FLD_TEXT_LENGTH );
+        if ( lengths != null )
+        {
+            // a missing value reads 0; a document with text is never 0 terms long
+            int length = (int) lengths.get( docId - leaf.docBase );
+            if ( length > 0 )
+            {
+                return length;
+            }
+        }
+
+        LruMap<Integer, Integer> docLengths = getGeneration( reader ).docLengths;
+        Integer key = Integer.valueOf( docId );
+        Integer docLength = get( docLengths, key );
+        if ( docLength != null )
+        {
+            return docLength.intValue();
+        }
+
+        int length = Utils.getDocTermCount( doc );
+        put( docLengths, key, Integer.valueOf( length ) );
+        return length;
+    }
+
+    /**
+     * @return number of documents of the current index generation
+     */
+    public int numDocs( IndexReader reader )
+    {
+        return getGeneration( reader ).numDocs;
+    }
+
+    /**
+     * Returns statistics of the reader's generation;
+     * starts a new (empty) generation for a reader that is not cached
+     */
+    private Generation getGeneration( IndexReader reader )
+    {
+        Object readerKey = reader.getCombinedCoreAndDeletesKey();
+        Generation current = last;
+        if ( current.readerKey != readerKey )
+        {
+            synchronized ( this )
+            {
+                current = generations.get( readerKey );
+                if ( current == null )
+                {
+                    current = new Generation( readerKey, reader.numDocs(), maxSize );
+                    generations.put( readerKey, current );
+                }
+                last = current;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Drops all cached values
+     */
+    public synchronized void clear()
+    {
+        generations.clear();
+        last = new Generation( null, 0, 0 );
+    }
+
+    /**
+     * @return number of cached terms of the reader used last
+     */
+    public int size()
+    {
+        return size( last.docFreqs );
+    }
+
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    public String toString()
+    {
+        Generation current = last;
+        return "TermStatsCache[size=" + size( current.docFreqs ) + ", docs=" + size( current.docLengths )
+            + ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+}
@@ -14,23 +14,16 @@ import org.apache.lucene.util.BytesRef;
 
 public class Utils
 {
-    // Values used in caching functions
-    // Stores cached maxIdf
-    public static float maxIdf = -1;
-    // Caches idf values
-    public static Hashtable<String, Float> idfTbl = null;
-    public static Vector<TermQuery> terms = null;
-    public static Document doc = null;
-    public static int docTermCount = 0;
-    
 
     /**
      * score(q,d) =?(t in q) tf(t in d) * idf(t) * getBoost(t.field in d) * lengthNorm(t.field in d) * coord(q,d) * queryNorm(q)
      * @param term
      * @param similarity
+     * @param termStats - caches idf of the term and length of the doc
      * @return
      */    
-    public static float scoreTerm( Document doc, String termStr, int docId, TFIDFSimilarity similarity, IndexReader idxReader, IndexSearcher searcher ) 
+    public static float scoreTerm( Document doc, String termStr, int docId, TFIDFSimilarity similarity, IndexReader idxReader, IndexSearcher searcher,
+    		TermStatsCache termStats ) 
     throws IOException
     {
         Term term = new Term( Defs.FLD_TEXT, termStr );
@@ -38,11 +31,11 @@ public class Utils
         // tf(t in d)    
         float tf = getTF(term.text(), docId, idxReader );
         // idf(t)
-        float idf = similarity.idf( idxReader.docFreq(term), idxReader.numDocs() );
+        float idf = termStats.idf( idxReader, term, similarity );
         // getBoost(t.field in d)
         float boost = new Float( "1.0").floatValue();
         // lengthNorm(t.field in d)
-        float lengthNorm = getLengthNorm( doc, (DefaultSimilarity) similarity );
+        float lengthNorm = getLengthNorm( doc, docId, idxReader, (DefaultSimilarity) similarity, termStats );
         // coord(q,d)
         float coord = new Float( "1.0").floatValue();        
         // queryNorm(q)        
@@ -53,104 +46,104 @@ public class Utils
         return score;
     }
     
-    public static float getIDF( String termStr, IndexReader reader, TFIDFSimilarity similarity )
+    public static float getIDF( String termStr, IndexReader reader, TFIDFSimilarity similarity, TermStatsCache termStats )
     throws IOException
     {
         Term term = new Term( Defs.FLD_TEXT, termStr );
-        float idf = similarity.idf( reader.docFreq(term), reader.numDocs() );
+        float idf = termStats.idf( reader, term, similarity );
         return idf;
     }
 
     
-    public static float getIDFNorm( String termStr, Vector<TermQuery> terms,
-    		IndexReader searcher, TFIDFSimilarity similarity )
-            throws IOException
-    {
-        return getIDFNorm( termStr, terms, searcher, similarity, false );
-    }    
-
     /**
+     * idf values and their maximum are cached by <code>termStats</code>
      * 
      * @param termStr
      * @param terms
-     * @param searcher
+     * @param idxReader
      * @param similarity
-     * @param cache - indicates if values will be cached
+     * @param termStats - cache of the statistics
      * @return
      * @throws IOException
      */
-    public static float getIDFNorm( String termStr, Vector<TermQuery> terms, IndexReader idxReader, TFIDFSimilarity similarity, boolean cache )
+    public static float getIDFNorm( String termStr, Vector<TermQuery> terms, IndexReader idxReader, TFIDFSimilarity similarity,
+    		TermStatsCache termStats )
+    throws IOException
+    {
+        float maxIdf = termStats.maxIdf( idxReader, terms, similarity );
+        
+        return getIDFNorm( termStr, maxIdf, idxReader, similarity, termStats );
+    }
+    
+    /**
+     * To normalize idf of all the terms of a query get
+     * <code>maxIdf</code> once with <code>TermStatsCache.maxIdf</code>
+     * 
+     * @param maxIdf - maximum idf of the terms of the query
+     * @param termStats - cache of the statistics
+     * @return idf / maxIdf
+     */
+    public static float getIDFNorm( String termStr, float maxIdf, IndexReader idxReader, TFIDFSimilarity similarity, TermStatsCache termStats )
     throws IOException
     {
-        // get maxIDF
-        // if cache and terms are equal get a cached value
-        // else find maxIdf
-        float maxIdf = 0;
-        if ( cache && terms.equals( Utils.terms ) )
-        {
-            maxIdf = Utils.maxIdf;
-        }
-        else
-        {
-            maxIdf = getMaxIDF(terms, idxReader, similarity);
-            // Cache the value
-            Utils.maxIdf = maxIdf;
-            Utils.terms = terms;
-        }
-                
         // Normalize
         Term term = new Term( Defs.FLD_TEXT, termStr );
-        float idf = similarity.idf( idxReader.docFreq(term), idxReader.numDocs() );
+        float idf = termStats.idf( idxReader, term, similarity );
         float idfNorm = idf / maxIdf;
         
         return idfNorm;
     }
     
-    
-    private static float getMaxIDF( Vector<TermQuery> terms, IndexReader idxReader, TFIDFSimilarity similarity ) throws IOException
-    {
-        float maxIdf = 0;
-
-        for ( int i = 0; i < terms.size(); i++ )
-        {
-            Term term = terms.elementAt( i ).getTerm();
-            float idf = similarity.idf( idxReader.docFreq(term), idxReader.numDocs() );
-            if ( maxIdf < idf )
-            {
-                maxIdf = idf;
-            }
-        }
-        return maxIdf;
-    }
-    
 
     /**
      * Use similarity class instead
      */
-    private static float getLengthNorm( Document doc, DefaultSimilarity similarity )
+    private static float getLengthNorm( Document doc, int docId, IndexReader idxReader, DefaultSimilarity similarity,
+    		TermStatsCache termStats )
+    throws IOException
     {
-    	IndexableField fld = doc.getField( Defs.FLD_TEXT );
-        int numTokens = new StringTokenizer( fld.stringValue() ).countTokens();
-        return similarity.lengthNorm( new FieldInvertState( Defs.FLD_TEXT ));
-
-//        return similarity.lengthNorm( Defs.FLD_TEXT, numTokens );
+        int numTokens = termStats.docLength( idxReader, docId, doc );
+        FieldInvertState invertState = new FieldInvertState( Defs.FLD_TEXT );
+        invertState.setLength( numTokens );
+        return similarity.lengthNorm( invertState );
     }
 
     
     /**
      *
+     * @param termStats - caches length of the doc; null - terms of the stored text are counted
      * @return tf * lengthNorm = [0;1]
      */
-    public static float getTFNorm( String termStr, Document doc, int docId, TFIDFSimilarity similarity, IndexReader idxReader, boolean cache ) 
+    public static float getTFNorm( String termStr, Document doc, int docId, TFIDFSimilarity similarity, IndexReader idxReader,
+    		TermStatsCache termStats ) 
     throws IOException
     {
-        float tf = getTF(termStr, docId, idxReader );
+        int docTermCount = termStats != null ? termStats.docLength( idxReader, docId, doc ) : getDocTermCount( doc );
+        return getTFNorm( getTF(termStr, docId, idxReader ), docTermCount, similarity );
+    }
+    
+    /**
+     * Same as <code>getTFNorm( String, Document, int, TFIDFSimilarity, IndexReader, TermStatsCache )</code>;
+     * tf is looked up in the already decoded term vector of the document
+     *
+     * @param termStats - caches length of the doc
+     * @return tf * lengthNorm = [0;1]
+     */
+    public static float getTFNorm( String termStr, Document doc, int docId, DocTermFreqs docTerms, 
+    		TFIDFSimilarity similarity, IndexReader idxReader, TermStatsCache termStats ) 
+    throws IOException
+    {
+        int docTermCount = termStats.docLength( idxReader, docId, doc );
+        return getTFNorm( docTerms.tf( termStr ), docTermCount, similarity );
+    }
+    
+    private static float getTFNorm( float tf, int docTermCount, TFIDFSimilarity similarity ) 
+    {
         //System.out.print( tf + " : " );
         // Normalize with similarity
         tf = similarity.tf( tf );
         //System.out.print( tf + " : " );        
         // Length Normazliation
-        int docTermCount = getDocTermCount( doc, cache );
         FieldInvertState invertState = new FieldInvertState(Defs.FLD_TEXT);
         invertState.setLength(docTermCount);
         
@@ -159,104 +152,73 @@ public class Utils
         return tf;
     }
     
+    /**
+     * Counts terms of the stored text of the doc; lengths of indexed docs
+     * should be read with <code>TermStatsCache.docLength</code>
+     */
     public static int getDocTermCount( Document doc )
     {
-        return getDocTermCount( doc, false );
+        StringBuffer strb = new StringBuffer();
+        String[] txt = doc.getValues( Defs.FLD_TEXT );
+        for ( int i = 0; i < txt.length; i++ )
+        {
+            strb.append( txt[i] );
+        }
+        return getTermCount( strb.toString() );
     }
     
-    public static int getDocTermCount( Document doc, boolean cache )
+    /**
+     * Counts whitespace separated terms of the text; used at index time 
+     * for <code>Defs.FLD_TEXT_LENGTH</code>
+     */
+    public static int getTermCount( String text )
     {
-        int docTermCount; 
-
-        if ( cache )
-        {
-            if ( doc.equals( Utils.doc ) )
-            {
-                return Utils.docTermCount;
-            }
-            // cache is empty
-            else
-            {
-                // Calculate docTermCount
-                docTermCount = getDocTermCount( doc, false );
-                // cache values
-                Utils.doc = doc;
-                Utils.docTermCount = docTermCount;
-                return docTermCount;
-            }
-        }
-        else
-        {
-            StringBuffer strb = new StringBuffer();
-            String[] txt = doc.getValues( Defs.FLD_TEXT );
-            for ( int i = 0; i < txt.length; i++ )
-            {
-                strb.append( txt[i] );
-            }
-            StringTokenizer tknzr = new StringTokenizer( strb.toString() );
-            docTermCount = tknzr.countTokens();
-            return docTermCount;
-        }
+        StringTokenizer tknzr = new StringTokenizer( text );
+        return tknzr.countTokens();
     }
     
     
     
     public static float getTF( String term, int docId, IndexReader idxReader ) throws IOException, NullPointerException
     {
-        // tf(t in d)
+        // tf(t in d); seeks the one term, to get tf of several terms of the doc use DocTermFreqs
         Terms termFreqVector = idxReader.getTermVector( docId, Defs.FLD_TEXT );
-        String[] terms = new String[0];
-        int freqs[];
-        ArrayList<String> temp1 = new ArrayList<String>();
-        ArrayList<Integer> temp2 = new ArrayList<Integer>();
-        TermsEnum termsEnum1 = termFreqVector.iterator(null);
-        BytesRef term1 = null;
-		while((term1 = termsEnum1.next()) != null) {
-			temp1.add(termsEnum1.term().utf8ToString());
-			temp2.add((int)termsEnum1.totalTermFreq());
-		}
-		terms = temp1.toArray( terms );
-
-		int[] ret = new int[temp2.size()];
-	    int i = 0;
-	    for (Integer e : temp2)  
-	        ret[i++] = e.intValue();
-	    freqs = ret;
-
-        boolean found = false;
-        float tf = 0;
-        for ( i = 0; i < terms.length && !found; i++ )
+        TermsEnum termsEnum = termFreqVector.iterator( null );
+        if ( !termsEnum.seekExact( new BytesRef( term ) ) )
         {
-            if ( term.equals( terms[i] ) )
-            {
-                tf = freqs[i];
-                found = true;                
-            }
+            return 0;
         }
-        return tf;
+        return termsEnum.totalTermFreq();
     }
 
+    /**
+     * The term vector of the doc is decoded once for all the terms;
+     * a doc without term vector overlaps none of them
+     */
     public static float coord( Vector<TermQuery> terms, Document doc, int docId, Similarity similarity, IndexReader idxReader ) 
     throws IOException
+    {
+        return coord( terms, DocTermFreqs.read( idxReader, docId ), similarity );
+    }
+
+    /**
+     * Same as <code>coord( Vector, Document, int, Similarity, IndexReader )</code>;
+     * tf of the terms is looked up in the already decoded term vector of the document
+     */
+    public static float coord( Vector<TermQuery> terms, DocTermFreqs docTerms, Similarity similarity ) 
     {
         int maxOverlap = terms.size();
         int overlap = 0;
         // Calculate overlap (terms w/ freq > 0
         for ( int i = 0; i < terms.size(); i++ )
         {
-        	float tf = 0;
-        	try {
-        		tf = getTF( terms.elementAt(i).getTerm().text(), docId, idxReader );
-        	} catch (Exception e) { continue; }
-            if ( tf > 0 )
+            if ( docTerms.tf( terms.elementAt(i).getTerm().text() ) > 0 )
             {
                 overlap++;
             }
         }        
         
-        float coord = similarity.coord(overlap, maxOverlap);
-        //System.out.println( overlap + " : " + maxOverlap + " : " + coord  );
-        return coord;
+        return similarity.coord(overlap, maxOverlap);
     }
 
     
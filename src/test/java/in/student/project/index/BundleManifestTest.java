@@ -0,0 +1,153 @@
+package in.student.project.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for BundleManifest.
+ */
+public class BundleManifestTest
+	extends TestCase
+{
+	private File root;
+
+	public BundleManifestTest( String testName ) {
+		super( testName );
+	}
+
+	public static Test suite() {
+		return new TestSuite( BundleManifestTest.class );
+	}
+
+	protected void setUp() throws IOException {
+		root = Files.createTempDirectory("manifest").toFile();
+		new File(root, "sub").mkdir();
+	}
+
+	protected void tearDown() {
+		delete(root);
+	}
+
+	public void testName() {
+		assertEquals("B01", BundleManifest.name(root, new File(root, "B01")));
+		assertEquals("sub/B02", BundleManifest.name(root, new File(new File(root, "sub"), "B02")));
+		// a single bundle given as the root
+		File bundle = new File(root, "B03");
+		assertEquals("B03", BundleManifest.name(bundle, bundle));
+	}
+
+	/**
+	 * Entries survive the commit data of the index; other commit data is ignored
+	 */
+	public void testCommitData() {
+		BundleManifest manifest = new BundleManifest();
+		manifest.put("B01", 1000, 20, 30);
+		manifest.put("sub/B02", 2000, 40, 50);
+
+		Map<String, String> commitData = new HashMap<String, String>(manifest.toCommitData());
+		assertEquals("1000 20 30", commitData.get(BundleManifest.PREFIX + "B01"));
+		commitData.put("other", "value");
+
+		BundleManifest read = new BundleManifest(commitData);
+		HashSet<String> names = new HashSet<String>();
+		names.add("B01");
+		names.add("sub/B02");
+		assertEquals(names, read.names());
+		assertEquals(manifest.toCommitData(), read.toCommitData());
+	}
+
+	public void testNewBundleIsChanged() throws IOException {
+		File bundle = write("B01", "contents");
+		BundleManifest current = new BundleManifest();
+		assertFalse(new BundleManifest().isUnchanged("B01", bundle, current));
+		assertTrue(current.names().contains("B01"));
+	}
+
+	public void testUnchangedBundle() throws IOException {
+		File bundle = write("B01", "contents");
+		BundleManifest indexed = manifestOf("B01", bundle);
+
+		BundleManifest current = new BundleManifest();
+		assertTrue(indexed.isUnchanged("B01", bundle, current));
+		assertEquals(indexed.toCommitData(), current.toCommitData());
+	}
+
+	/**
+	 * A bundle with a new modification time but the same contents is unchanged;
+	 * its new state is recorded so its checksum is not computed again
+	 */
+	public void testTouchedBundle() throws IOException {
+		File bundle = write("B01", "contents");
+		BundleManifest indexed = manifestOf("B01", bundle);
+		assertTrue(bundle.setLastModified(bundle.lastModified() + 10000));
+
+		BundleManifest current = new BundleManifest();
+		assertTrue(indexed.isUnchanged("B01", bundle, current));
+		assertEquals(bundle.lastModified() + " " + bundle.length(),
+				prefix(current.toCommitData().get(BundleManifest.PREFIX + "B01")));
+	}
+
+	public void testChangedBundle() throws IOException {
+		File bundle = write("B01", "contents");
+		BundleManifest indexed = manifestOf("B01", bundle);
+		long modified = bundle.lastModified();
+
+		// same size and modification time would be taken as unchanged; both differ here
+		write("B01", "changed contents");
+		bundle.setLastModified(modified + 10000);
+		BundleManifest current = new BundleManifest();
+		assertFalse(indexed.isUnchanged("B01", bundle, current));
+
+		// a change that keeps the size is found by the checksum
+		write("B01", "CONTENTS");
+		bundle.setLastModified(modified + 20000);
+		assertFalse(indexed.isUnchanged("B01", bundle, new BundleManifest()));
+	}
+
+	/**
+	 * @return manifest with the bundle as it is now
+	 */
+	private static BundleManifest manifestOf(String name, File bundle) throws IOException {
+		BundleManifest manifest = new BundleManifest();
+		new BundleManifest().isUnchanged(name, bundle, manifest);
+		return manifest;
+	}
+
+	/**
+	 * @return modification time and size of an entry
+	 */
+	private static String prefix(String entry) {
+		return entry.substring(0, entry.lastIndexOf(' '));
+	}
+
+	private File write(String name, String contents) throws IOException {
+		File file = new File(root, name);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(contents.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
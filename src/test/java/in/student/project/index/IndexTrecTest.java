@@ -0,0 +1,161 @@
+package in.student.project.index;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import in.student.project.util.Defs;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Full and incremental runs of IndexTrec: the documents of changed bundles
+ * are replaced, of removed bundles deleted, and of unchanged or only touched
+ * bundles kept as they are.
+ */
+public class IndexTrecTest
+	extends TestCase
+{
+	private File dir;
+	private File root;
+	private File index;
+
+	public IndexTrecTest( String testName ) {
+		super( testName );
+	}
+
+	public static Test suite() {
+		return new TestSuite( IndexTrecTest.class );
+	}
+
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("indextrec").toFile();
+		root = new File(dir, "bundles");
+		root.mkdir();
+		index = new File(dir, "index");
+	}
+
+	protected void tearDown() {
+		delete(dir);
+	}
+
+	public void testIncrementalRun() throws IOException {
+		File b01 = write("B01", doc("B01-1", "first"), doc("B01-2", "second"));
+		File b02 = write("B02", doc("B02-1", "third"));
+		write("B03", doc("B03-1", "fourth"),
+				// documents without DOCNO are skipped
+				"<DOC>\n<html><head><title>none</title></head><body>no docno</body></html>\n</DOC>\n");
+		IndexTrec.main(new String[] {"-index", index.getPath(), "-create", root.getPath()});
+
+		Map<String, String> docs = readDocs();
+		assertEquals("[B01-1, B01-2, B02-1, B03-1]", docs.keySet().toString());
+		assertEquals("B03 fourth", docs.get("B03-1"));
+		assertEquals(names("B01", "B02", "B03"), readManifest().names());
+
+		// touched (same contents), changed, removed and new bundles
+		assertTrue(b01.setLastModified(b01.lastModified() + 10000));
+		long modified = b02.lastModified();
+		write("B02", doc("B02-1", "changed"), doc("B02-2", "added"));
+		b02.setLastModified(modified + 10000);
+		assertTrue(new File(root, "B03").delete());
+		write("B04", doc("B04-1", "fifth"));
+		IndexTrec.main(new String[] {"-index", index.getPath(), root.getPath()});
+
+		docs = readDocs();
+		assertEquals("[B01-1, B01-2, B02-1, B02-2, B04-1]", docs.keySet().toString());
+		assertEquals("B01 first", docs.get("B01-1"));
+		assertEquals("B02 changed", docs.get("B02-1"));
+		assertEquals("B04 fifth", docs.get("B04-1"));
+		BundleManifest manifest = readManifest();
+		assertEquals(names("B01", "B02", "B04"), manifest.names());
+		// the touched bundle is recorded with its new modification time
+		assertTrue(manifest.toCommitData().get(BundleManifest.PREFIX + "B01").startsWith(b01.lastModified() + " "));
+
+		// nothing changed: nothing is indexed again
+		IndexTrec.main(new String[] {"-index", index.getPath(), root.getPath()});
+		assertEquals(docs, readDocs());
+	}
+
+	private static String doc(String docNo, String text) {
+		return "<DOC>\n<DOCNO>" + docNo + "</DOCNO>\n"
+				+ "<html><head><title>" + docNo + "</title></head><body>" + text + "</body></html>\n</DOC>\n";
+	}
+
+	/**
+	 * @return bundle - contents of the live documents by DOCNO; a DOCNO indexed twice fails
+	 */
+	private Map<String, String> readDocs() throws IOException {
+		TreeMap<String, String> docs = new TreeMap<String, String>();
+		Directory directory = FSDirectory.open(index);
+		DirectoryReader reader = DirectoryReader.open(directory);
+		try {
+			Bits live = MultiFields.getLiveDocs(reader);
+			for (int i = 0; i < reader.maxDoc(); i++) {
+				if (live != null && !live.get(i))
+					continue;
+				Document doc = reader.document(i);
+				String previous = docs.put(doc.get("DOCNO"), doc.get(Defs.FLD_BUNDLE) + " " + doc.get(Defs.FLD_TEXT));
+				assertNull("indexed twice: " + doc.get("DOCNO"), previous);
+			}
+		} finally {
+			reader.close();
+			directory.close();
+		}
+		return docs;
+	}
+
+	private BundleManifest readManifest() throws IOException {
+		Directory directory = FSDirectory.open(index);
+		DirectoryReader reader = DirectoryReader.open(directory);
+		try {
+			return new BundleManifest(reader.getIndexCommit().getUserData());
+		} finally {
+			reader.close();
+			directory.close();
+		}
+	}
+
+	private static HashSet<String> names(String... names) {
+		HashSet<String> set = new HashSet<String>();
+		for (String name : names) {
+			set.add(name);
+		}
+		return set;
+	}
+
+	private File write(String name, String... docs) throws IOException {
+		File file = new File(root, name);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			for (String doc : docs) {
+				out.write(doc.getBytes("UTF-8"));
+			}
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
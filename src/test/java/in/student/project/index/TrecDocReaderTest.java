@@ -0,0 +1,128 @@
+package in.student.project.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for TrecDocReader.
+ */
+public class TrecDocReaderTest
+	extends TestCase
+{
+	private static final String NL = System.getProperty("line.separator");
+
+	private static final String BUNDLE =
+		"header before the first doc\n" +
+		"<DOC>\n" +
+		"<DOCNO>WTX104-B01-1</DOCNO>\n" +
+		"<html>first</html>\n" +
+		"</DOC>\n" +
+		"<DOC>\n" +
+		"<html>no docno</html>\n" +
+		"</DOC>\n" +
+		"<DOC>\n" +
+		"<DOCNO>WTX104-B01-3</DOCNO>\n" +
+		"</DOC>\n" +
+		"trailing line\n" +
+		"</DOC>\n" +
+		"<DOC>\n" +
+		"<DOCNO>WTX104-B01-4</DOCNO>\n" +
+		"unterminated\n";
+
+	private File dir;
+
+	public TrecDocReaderTest( String testName ) {
+		super( testName );
+	}
+
+	public static Test suite() {
+		return new TestSuite( TrecDocReaderTest.class );
+	}
+
+	protected void setUp() throws IOException {
+		dir = Files.createTempDirectory("trecdocs").toFile();
+	}
+
+	protected void tearDown() {
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	public void testPlainBundle() throws IOException {
+		File file = new File(dir, "B01");
+		write(new FileOutputStream(file));
+		assertDocs(new TrecDocReader(file));
+	}
+
+	public void testGzippedBundle() throws IOException {
+		File file = new File(dir, "B01.gz");
+		write(new GZIPOutputStream(new FileOutputStream(file)));
+		assertDocs(new TrecDocReader(file));
+	}
+
+	/**
+	 * Contents of a gzipped bundle that were inflated elsewhere
+	 */
+	public void testInflatedContents() throws IOException {
+		TrecDocReader docs = new TrecDocReader(new File(dir, "B01.gz"),
+				new ByteArrayInputStream(BUNDLE.getBytes("UTF-8")));
+		assertDocs(docs);
+	}
+
+	public void testEmptyBundle() throws IOException {
+		TrecDocReader docs = new TrecDocReader(new File(dir, "B02"),
+				new ByteArrayInputStream(new byte[0]));
+		try {
+			assertFalse(docs.next());
+		} finally {
+			docs.close();
+		}
+	}
+
+	private static void write(OutputStream out) throws IOException {
+		try {
+			out.write(BUNDLE.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void assertDocs(TrecDocReader docs) throws IOException {
+		try {
+			assertTrue(docs.next());
+			assertEquals("WTX104-B01-1", docs.getDocNo());
+			assertEquals("<DOC>" + NL + "<DOCNO>WTX104-B01-1</DOCNO>" + NL + "<html>first</html>" + NL + "</DOC>",
+					docs.getDoc().toString());
+
+			assertTrue(docs.next());
+			assertNull(docs.getDocNo());
+			assertEquals("<DOC>" + NL + "<html>no docno</html>" + NL + "</DOC>", docs.getDoc().toString());
+
+			assertTrue(docs.next());
+			assertEquals("WTX104-B01-3", docs.getDocNo());
+			String third = "<DOC>" + NL + "<DOCNO>WTX104-B01-3</DOCNO>" + NL + "</DOC>";
+			assertEquals(third, docs.getDoc().toString());
+
+			// a repeated </DOC> returns the document again with the lines after the first one
+			assertTrue(docs.next());
+			assertEquals("WTX104-B01-3", docs.getDocNo());
+			assertEquals(third + NL + "trailing line" + NL + "</DOC>", docs.getDoc().toString());
+
+			// a document without </DOC> is not returned
+			assertFalse(docs.next());
+		} finally {
+			docs.close();
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package in.student.project.jgibblda;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Estimation and inference with the dense, sparse and alias samplers, on one
+ * thread and on several: the counts must agree with the topic assignments,
+ * and runs with the same seed must be the same. The sparse and the alias
+ * samplers must sample the distribution of the dense one.
+ */
+public class SamplerTest 
+	extends TestCase
+{
+	private static final String [] SAMPLERS = {
+		Constants.SAMPLER_DENSE, Constants.SAMPLER_SPARSE, Constants.SAMPLER_ALIAS
+	};
+	private static final int K = 5;
+	private static final int NITERS = 20;
+	
+	// sweeps of a long chain on a tiny corpus, whose frequencies are compared
+	private static final int BURN_IN = 100;
+	private static final int SWEEPS = 50000;
+	private static final double TOLERANCE = 0.04;
+	
+	private File dir;
+	
+	public SamplerTest( String testName )
+	{
+		super( testName );
+	}
+	
+	public static Test suite()
+	{
+		return new TestSuite( SamplerTest.class );
+	}
+	
+	/**
+	 * Writes a corpus of docs that mix two of three groups of words
+	 */
+	protected void setUp() throws IOException
+	{
+		dir = Files.createTempDirectory( "jgibblda" ).toFile();
+		Random random = new Random( 1 );
+		Writer writer = new FileWriter( new File( dir, "docs.dat" ) );
+		try {
+			int M = 40;
+			writer.write( M + "\n" );
+			for (int m = 0; m < M; m++){
+				int first = m % 3, second = (m + 1) % 3;
+				int length = 20 + random.nextInt( 20 );
+				StringBuilder doc = new StringBuilder();
+				for (int n = 0; n < length; n++){
+					int group = random.nextInt( 4 ) == 0 ? second : first;
+					doc.append( " w" ).append( group ).append( "_" ).append( random.nextInt( 10 ) );
+				}
+				writer.write( doc.toString().trim() + "\n" );
+			}
+		} finally {
+			writer.close();
+		}
+		
+		// few words, so a long chain is fast
+		writer = new FileWriter( new File( dir, "tiny.dat" ) );
+		try {
+			writer.write( "5\na b c a\nb c d\na d d b\nc c a e\ne d b\n" );
+		} finally {
+			writer.close();
+		}
+	}
+	
+	protected void tearDown()
+	{
+		for (File file : dir.listFiles()){
+			file.delete();
+		}
+		dir.delete();
+	}
+	
+	private LDACmdOption option( String sampler, int threads, long seed )
+	{
+		LDACmdOption option = new LDACmdOption();
+		option.est = true;
+		option.dir = dir.getPath();
+		option.dfile = "docs.dat";
+		option.K = K;
+		option.niters = NITERS;
+		option.savestep = 0;
+		option.twords = 5;
+		option.sampler = sampler;
+		option.threads = threads;
+		option.seed = seed;
+		return option;
+	}
+	
+	private Model estimate( String sampler, int threads, long seed )
+	{
+		Estimator estimator = new Estimator();
+		assertTrue( estimator.init( option( sampler, threads, seed ) ) );
+		estimator.estimate();
+		return estimator.trnModel;
+	}
+	
+	/**
+	 * Counts rebuilt from z must be the counts of the model
+	 */
+	private static void assertCounts( String message, Model model )
+	{
+		int [][] nw = new int[model.V][model.K];
+		int [][] nd = new int[model.M][model.K];
+		int [] nwsum = new int[model.K];
+		for (int m = 0; m < model.M; m++){
+			Document doc = model.data.docs[m];
+			assertEquals( message, doc.length, model.ndsum[m] );
+			for (int n = 0; n < doc.length; n++){
+				int topic = model.z[model.zOffset[m] + n];
+				assertTrue( message, topic >= 0 && topic < model.K );
+				nw[doc.words[n]][topic]++;
+				nd[m][topic]++;
+				nwsum[topic]++;
+			}
+			assertTrue( message + ": nd of doc " + m, Arrays.equals( nd[m], model.nd[m] ) );
+		}
+		for (int w = 0; w < model.V; w++){
+			assertTrue( message + ": nw of word " + w, Arrays.equals( nw[w], model.nw[w] ) );
+		}
+		assertTrue( message + ": nwsum", Arrays.equals( nwsum, model.nwsum ) );
+	}
+	
+	/**
+	 * Fractions of the sweeps of a chain on the tiny corpus in which each pair
+	 * of words has the same topic; unlike the topics, these do not depend on
+	 * how the chain labels them
+	 */
+	private double [] sameTopicFrequencies( String sampler, long seed )
+	{
+		LDACmdOption option = option( sampler, 1, seed );
+		option.dfile = "tiny.dat";
+		option.K = 3;
+		option.alpha = 0.1;
+		option.beta = 0.1;
+		Estimator estimator = new Estimator();
+		assertTrue( estimator.init( option ) );
+		Model model = estimator.trnModel;
+		
+		int N = model.zOffset[model.M];
+		double [] same = new double[N * (N - 1) / 2];
+		for (int sweep = 0; sweep < BURN_IN + SWEEPS; sweep++){
+			for (int m = 0; m < model.M; m++){
+				estimator.sample( m );
+			}
+			if (sweep < BURN_IN)
+				continue;
+			int pair = 0;
+			for (int i = 0; i < N; i++){
+				for (int j = i + 1; j < N; j++, pair++){
+					if (model.z[i] == model.z[j])
+						same[pair]++;
+				}
+			}
+		}
+		for (int pair = 0; pair < same.length; pair++){
+			same[pair] /= SWEEPS;
+		}
+		return same;
+	}
+	
+	/**
+	 * Frequencies of a chain of the sampler must be those of the dense sampler
+	 */
+	private void assertSameDistribution( String sampler )
+	{
+		double [] dense = sameTopicFrequencies( Constants.SAMPLER_DENSE, 1 );
+		double [] same = sameTopicFrequencies( sampler, 2 );
+		for (int pair = 0; pair < same.length; pair++){
+			assertEquals( sampler + ": pair " + pair, dense[pair], same[pair], TOLERANCE );
+		}
+	}
+	
+	public void testEstimationCountsMatchAssignments()
+	{
+		for (String sampler : SAMPLERS){
+			for (int threads = 1; threads <= 3; threads += 2){
+				assertCounts( sampler + ", " + threads + " threads", estimate( sampler, threads, 1 ) );
+			}
+		}
+	}
+	
+	public void testEstimationWithSeedIsReproducible()
+	{
+		for (String sampler : SAMPLERS){
+			for (int threads = 1; threads <= 3; threads += 2){
+				String message = sampler + ", " + threads + " threads";
+				int [] z = estimate( sampler, threads, 7 ).z;
+				assertTrue( message, Arrays.equals( z, estimate( sampler, threads, 7 ).z ) );
+				assertFalse( message + ": other seed", Arrays.equals( z, estimate( sampler, threads, 8 ).z ) );
+			}
+		}
+	}
+	
+	public void testSparseSamplesDenseDistribution()
+	{
+		assertSameDistribution( Constants.SAMPLER_SPARSE );
+	}
+	
+	public void testAliasSamplesDenseDistribution()
+	{
+		assertSameDistribution( Constants.SAMPLER_ALIAS );
+	}
+	
+	public void testInference()
+	{
+		// model-final of the trained model
+		estimate( Constants.SAMPLER_DENSE, 1, 1 );
+		String [] docs = { "w0_1 w0_2 w0_2 w1_3 unknown", "w2_5 w2_6 w2_7 w1_1 w2_5" };
+		
+		for (String sampler : SAMPLERS){
+			LDACmdOption option = option( sampler, 1, 3 );
+			option.est = false;
+			option.inf = true;
+			option.modelName = "model-final";
+			
+			Inferencer inferencer = new Inferencer();
+			assertTrue( inferencer.init( option ) );
+			inferencer.niters = NITERS;
+			Model model = inferencer.inference( docs );
+			assertCounts( sampler, model );
+			
+			inferencer = new Inferencer();
+			assertTrue( inferencer.init( option ) );
+			inferencer.niters = NITERS;
+			assertTrue( sampler, Arrays.equals( model.z, inferencer.inference( docs ).z ) );
+		}
+	}
+}
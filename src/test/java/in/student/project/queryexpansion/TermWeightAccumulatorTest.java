@@ -0,0 +1,180 @@
+package in.student.project.queryexpansion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Vector;
+
+import org.apache.lucene.search.TermQuery;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for TermWeightAccumulator.
+ */
+public class TermWeightAccumulatorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TermWeightAccumulatorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TermWeightAccumulatorTest.class );
+    }
+
+    /**
+     * Weights of equal terms are summed up; missing terms weigh 0
+     */
+    public void testAddSumsWeights()
+    {
+        TermWeightAccumulator weights = new TermWeightAccumulator();
+        weights.add( "crime", 1.5f );
+        weights.add( "organized", 0.25f );
+        weights.add( "crime", 2.0f );
+
+        assertEquals( 2, weights.size() );
+        assertEquals( 3.5f, weights.get( "crime" ), 0f );
+        assertEquals( 0.25f, weights.get( "organized" ), 0f );
+        assertEquals( 0f, weights.get( "international" ), 0f );
+    }
+
+    /**
+     * Terms keep their insertion order and their weights become boosts
+     */
+    public void testGetTermsInInsertionOrder()
+    {
+        TermWeightAccumulator weights = new TermWeightAccumulator();
+        weights.add( "b", 1f );
+        weights.add( "a", 2f );
+        weights.add( "c", 3f );
+        weights.add( "a", 1f );
+
+        Vector<TermQuery> terms = weights.getTerms( "contents" );
+        assertEquals( 3, terms.size() );
+        String[] expected = { "b", "a", "c" };
+        float[] boosts = { 1f, 3f, 3f };
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( "contents", terms.elementAt( i ).getTerm().field() );
+            assertEquals( expected[i], terms.elementAt( i ).getTerm().text() );
+            assertEquals( boosts[i], terms.elementAt( i ).getBoost(), 0f );
+            assertEquals( expected[i], weights.term( i ) );
+            assertEquals( boosts[i], weights.weight( i ), 0f );
+        }
+    }
+
+    /**
+     * The map grows past its expected size and keeps all the weights;
+     * colliding hash codes ("Aa", "BB") are told apart
+     */
+    public void testGrowKeepsWeights()
+    {
+        TermWeightAccumulator weights = new TermWeightAccumulator( 1 );
+        Map<String, Float> expected = new HashMap<String, Float>();
+        Random random = new Random( 1 );
+        for ( int i = 0; i < 5000; i++ )
+        {
+            String term = "t" + random.nextInt( 1000 );
+            float weight = random.nextInt( 8 ) / 4f;
+            weights.add( term, weight );
+            Float sum = expected.get( term );
+            expected.put( term, sum == null ? weight : sum + weight );
+        }
+        weights.add( "Aa", 1f );
+        weights.add( "BB", 2f );
+        expected.put( "Aa", 1f );
+        expected.put( "BB", 2f );
+
+        assertEquals( expected.size(), weights.size() );
+        for ( Map.Entry<String, Float> entry : expected.entrySet() )
+        {
+            assertEquals( entry.getKey(), entry.getValue().floatValue(), weights.get( entry.getKey() ), 0f );
+        }
+    }
+
+    /**
+     * Top terms are sorted by weight; equally heavy terms keep their insertion order
+     */
+    public void testTopTermsOrderAndTies()
+    {
+        TermWeightAccumulator weights = new TermWeightAccumulator();
+        weights.add( "a", 1f );
+        weights.add( "b", 3f );
+        weights.add( "c", 2f );
+        weights.add( "d", 3f );
+        weights.add( "e", 2f );
+        weights.add( "f", 3f );
+
+        assertTerms( new String[] { "b", "d", "f", "c", "e", "a" }, weights.getTopTerms( "contents", 10 ) );
+        assertTerms( new String[] { "b", "d", "f", "c" }, weights.getTopTerms( "contents", 4 ) );
+        // the cut falls between equally heavy terms
+        assertTerms( new String[] { "b", "d" }, weights.getTopTerms( "contents", 2 ) );
+        assertTerms( new String[] {}, weights.getTopTerms( "contents", 0 ) );
+        assertTerms( new String[] {}, new TermWeightAccumulator().getTopTerms( "contents", 5 ) );
+    }
+
+    /**
+     * Top terms are the same as the head of a stable sort of all the terms
+     */
+    public void testTopTermsMatchStableSort()
+    {
+        final TermWeightAccumulator weights = new TermWeightAccumulator();
+        Random random = new Random( 2 );
+        for ( int i = 0; i < 2000; i++ )
+        {
+            // few distinct weights, so there are many ties
+            weights.add( "t" + random.nextInt( 500 ), random.nextInt( 4 ) );
+        }
+
+        List<Integer> order = new ArrayList<Integer>();
+        for ( int i = 0; i < weights.size(); i++ )
+        {
+            order.add( i );
+        }
+        Collections.sort( order, new Comparator<Integer>()
+        {
+            public int compare( Integer i, Integer j )
+            {
+                return Float.compare( weights.weight( j ), weights.weight( i ) );
+            }
+        } );
+
+        for ( int maxTerms : new int[] { 1, 7, 100, weights.size(), weights.size() + 1 } )
+        {
+            Vector<TermQuery> top = weights.getTopTerms( "contents", maxTerms );
+            assertEquals( Math.min( maxTerms, weights.size() ), top.size() );
+            for ( int i = 0; i < top.size(); i++ )
+            {
+                int idx = order.get( i );
+                assertEquals( weights.term( idx ), top.elementAt( i ).getTerm().text() );
+                assertEquals( weights.weight( idx ), top.elementAt( i ).getBoost(), 0f );
+            }
+        }
+    }
+
+    private static void assertTerms( String[] expected, Vector<TermQuery> terms )
+    {
+        assertEquals( expected.length, terms.size() );
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( expected[i], terms.elementAt( i ).getTerm().text() );
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package in.student.project.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for FeedbackTerms.
+ */
+public class FeedbackTermsTest
+    extends TestCase
+{
+    private final TFIDFSimilarity similarity = new DefaultSimilarity();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FeedbackTermsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FeedbackTermsTest.class );
+    }
+
+    /**
+     * All the terms are decoded with their tf, in UTF-8 byte order
+     */
+    public void testRoundTrip() throws IOException
+    {
+        Map<String, Integer> termFreqs = new HashMap<String, Integer>();
+        termFreqs.put( "organized", 2 );
+        termFreqs.put( "crime", 5 );
+        termFreqs.put( "\uFFFD", 1 );
+        // a supplementary character sorts after U+FFFD in UTF-8, before it in UTF-16
+        termFreqs.put( "\uD83D\uDE00", 3 );
+        termFreqs.put( "zone", 1 );
+
+        FeedbackTerms decoded = FeedbackTerms.decode( FeedbackTerms.encode( termFreqs, 10, similarity ) );
+        assertEquals( 5, decoded.getDocTermCount() );
+        String[] expected = { "crime", "organized", "zone", "\uFFFD", "\uD83D\uDE00" };
+        assertEquals( expected.length, decoded.getTerms().length );
+        for ( int i = 0; i < expected.length; i++ )
+        {
+            assertEquals( expected[i], decoded.getTerms()[i] );
+            assertEquals( termFreqs.get( expected[i] ).intValue(), decoded.getTermFrequencies()[i] );
+        }
+    }
+
+    public void testEmptyDocument() throws IOException
+    {
+        FeedbackTerms decoded = FeedbackTerms.decode(
+            FeedbackTerms.encode( new HashMap<String, Integer>(), 10, similarity ) );
+        assertEquals( 0, decoded.getDocTermCount() );
+        assertEquals( 0, decoded.getTerms().length );
+    }
+
+    /**
+     * The kept terms are the top N by tf * idf( tf, number of distinct terms ),
+     * equal weights in index order; the document keeps its distinct term count
+     */
+    public void testTopTermsByWeight() throws IOException
+    {
+        final Map<String, Integer> termFreqs = new HashMap<String, Integer>();
+        Random random = new Random( 3 );
+        for ( int i = 0; i < 300; i++ )
+        {
+            termFreqs.put( "t" + i, 1 + random.nextInt( 40 ) );
+        }
+
+        List<String> order = new ArrayList<String>( termFreqs.keySet() );
+        Collections.sort( order, new Comparator<String>()
+        {
+            public int compare( String a, String b )
+            {
+                int cmp = Float.compare( weight( termFreqs, b ), weight( termFreqs, a ) );
+                return cmp != 0 ? cmp : new BytesRef( a ).compareTo( new BytesRef( b ) );
+            }
+        } );
+
+        for ( int maxTerms : new int[] { 0, 1, 25, 299, 300, 301 } )
+        {
+            FeedbackTerms decoded = FeedbackTerms.decode( FeedbackTerms.encode( termFreqs, maxTerms, similarity ) );
+            assertEquals( termFreqs.size(), decoded.getDocTermCount() );
+
+            TreeSet<String> expected = new TreeSet<String>( order.subList( 0, Math.min( maxTerms, order.size() ) ) );
+            assertEquals( expected.size(), decoded.getTerms().length );
+            int i = 0;
+            for ( String term : expected )
+            {
+                assertEquals( term, decoded.getTerms()[i] );
+                assertEquals( termFreqs.get( term ).intValue(), decoded.getTermFrequencies()[i] );
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Terms are counted as the analyzer indexes them
+     */
+    public void testAnalyze() throws IOException
+    {
+        Map<String, Integer> termFreqs = FeedbackTerms.analyze( new StandardAnalyzer( Version.LUCENE_48 ),
+            "Organized crime and the crime of organized CRIME" );
+        assertEquals( 2, termFreqs.size() );
+        assertEquals( 3, termFreqs.get( "crime" ).intValue() );
+        assertEquals( 2, termFreqs.get( "organized" ).intValue() );
+    }
+
+    private float weight( Map<String, Integer> termFreqs, String term )
+    {
+        int tf = termFreqs.get( term ).intValue();
+        return tf * similarity.idf( tf, termFreqs.size() );
+    }
+}